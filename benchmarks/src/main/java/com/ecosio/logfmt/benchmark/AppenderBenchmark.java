@@ -0,0 +1,79 @@
+package com.ecosio.logfmt.benchmark;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.FormatterPlan;
+import com.ecosio.logfmt.internal.appender.KeyValueAppender;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each {@link KeyValueAppender} of <em>com.ecosio.logfmt.internal.appender</em> in
+ * isolation. The buffer the key-value pairs are appended to and the set of emitted keys are reused
+ * across invocations, so the reported allocation rate is caused by the appender itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AppenderBenchmark {
+
+  /**
+   * The name of the appender to benchmark as used within the <em>fields</em> configuration.
+   */
+  @Param({"time", "level", "thread", "package", "module", "msg", "mdc", "custom", "error"})
+  public String appender;
+
+  /**
+   * The kind of event to process.
+   */
+  @Param({"short", "mdc", "markers", "frozenMarkers", "exception"})
+  public String scenario;
+
+  private ILoggingEvent event;
+  private KeyValueAppender keyValueAppender;
+  private FormatterPlan plan;
+  private StringBuilder sb;
+  private EmittedKeys keys;
+
+  /**
+   * Creates the event and looks up the appender to benchmark.
+   */
+  @Setup
+  public void setUp() {
+    event = BenchmarkEvents.create(scenario);
+    final com.ecosio.logfmt.internal.State state = new com.ecosio.logfmt.internal.State();
+    keyValueAppender = state.getPredefinedAppender(appender);
+    plan = state.getPlan();
+    if (keyValueAppender == null) {
+      throw new IllegalArgumentException("Unknown appender " + appender);
+    }
+    sb = new StringBuilder(64 * 1024);
+    keys = new EmittedKeys();
+  }
+
+  /**
+   * Appends the key-value pairs of the appender for the event.
+   *
+   * @return The number of characters appended
+   */
+  @Benchmark
+  public int append() {
+    sb.setLength(0);
+    keys.reset();
+    keyValueAppender.append(sb, keys, event, plan);
+    return sb.length();
+  }
+}
@@ -0,0 +1,231 @@
+package com.ecosio.logfmt.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.LoggingEvent;
+import com.ecosio.logfmt.LogFmtMarker;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Creates the logging events the benchmarks operate on. The events are regular logback
+ * {@link LoggingEvent} instances resembling the kind of log lines produced by our services.
+ */
+public final class BenchmarkEvents {
+
+  /**
+   * The logger context the benchmark loggers are created from.
+   */
+  private static final LoggerContext CONTEXT = new LoggerContext();
+  /**
+   * The logger the benchmark events are issued for.
+   */
+  private static final Logger LOGGER =
+          CONTEXT.getLogger("com.ecosio.logfmt.benchmark.SampleService");
+  /**
+   * The caller data assigned to each event. It is set explicitly, so that the benchmarks measure
+   * the layout rather than logback's stack walk.
+   */
+  private static final StackTraceElement[] CALLER_DATA = {
+    new StackTraceElement("com.ecosio.logfmt.benchmark.SampleService",
+            "process", "SampleService.java", 42)
+  };
+
+  /**
+   * The constant part of the marker chain of the <em>frozenMarkers</em> scenario.
+   */
+  private static final LogFmtMarker FROZEN_FLOW = frozenFlow();
+
+  private BenchmarkEvents() {
+
+  }
+
+  /**
+   * Creates the event for the given scenario.
+   *
+   * @param scenario One of <em>short</em>, <em>mdc</em>, <em>markers</em>, <em>frozenMarkers</em>
+   *                 or <em>exception</em>
+   * @return The event for the given scenario
+   */
+  @NonNull
+  public static ILoggingEvent create(@NonNull final String scenario) {
+    return switch (scenario) {
+      case "short" -> shortMessage();
+      case "mdc" -> mdcHeavy();
+      case "markers" -> nestedMarkers();
+      case "frozenMarkers" -> frozenMarkers();
+      case "exception" -> deepException();
+      default -> throw new IllegalArgumentException("Unknown scenario " + scenario);
+    };
+  }
+
+  /**
+   * Creates an event with a short parameterized message and an empty MDC.
+   *
+   * @return A new event with a short message
+   */
+  @NonNull
+  public static ILoggingEvent shortMessage() {
+    final LoggingEvent event =
+            event(Level.INFO, "Processed document {} in {} ms", null, "DOC-4711", 42);
+    event.setMDCPropertyMap(Map.of());
+    return event;
+  }
+
+  /**
+   * Creates an event carrying 15 MDC entries, similar to what a request scoped context contains.
+   * Like logback does, the entries are handed to the event as read-only map.
+   *
+   * @return A new event with a populated MDC
+   */
+  @NonNull
+  public static ILoggingEvent mdcHeavy() {
+    final LoggingEvent event =
+            event(Level.INFO, "Forwarding message to partner {}", null, "ACME Corp.");
+    event.setMDCPropertyMap(Collections.unmodifiableMap(mdc()));
+    return event;
+  }
+
+  /**
+   * Creates an event carrying a three level deep chain of {@link LogFmtMarker} objects.
+   *
+   * @return A new event with nested markers
+   */
+  @NonNull
+  public static ILoggingEvent nestedMarkers() {
+    final LoggingEvent event =
+            event(Level.DEBUG, "Received {} bytes from {}", null, 16384, "sftp.example.org");
+    event.addMarker(nestedMarker());
+    event.setMDCPropertyMap(Map.of());
+    return event;
+  }
+
+  /**
+   * Creates an event carrying the same markers as {@link #nestedMarkers()}, except that the two
+   * constant levels of the chain are a single frozen marker.
+   *
+   * @return A new event with a marker referencing a frozen marker
+   */
+  @NonNull
+  public static ILoggingEvent frozenMarkers() {
+    final LoggingEvent event =
+            event(Level.DEBUG, "Received {} bytes from {}", null, 16384, "sftp.example.org");
+    final LogFmtMarker marker = LogFmtMarker.with("messageId", "MSG-0815")
+            .and("durationMs", 42L)
+            .and("sizeBytes", 16384);
+    marker.add(FROZEN_FLOW);
+    event.addMarker(marker);
+    event.setMDCPropertyMap(Map.of());
+    return event;
+  }
+
+  /**
+   * Creates an error event with an exception caused by four further exceptions, each thrown a
+   * few dozen frames deep.
+   *
+   * @return A new event with a deep exception cause chain
+   */
+  @NonNull
+  public static ILoggingEvent deepException() {
+    final LoggingEvent event =
+            event(Level.ERROR, "Failed to deliver message {}", deepCause(), "MSG-0815");
+    event.setMDCPropertyMap(Map.of("requestId", "3f1c9a2e-8d7b-4b8e-9c55-0f5a7d1e2b44"));
+    return event;
+  }
+
+  /**
+   * Creates a three level deep chain of {@link LogFmtMarker} objects.
+   *
+   * @return The outermost marker of the chain
+   */
+  @NonNull
+  public static LogFmtMarker nestedMarker() {
+    final LogFmtMarker root = LogFmtMarker.with("nodeName", "node-17")
+            .and("containerName", "edi-inbound-7d9f8c6b5-x2k4q");
+    final LogFmtMarker flow = LogFmtMarker.with("flow", "edi-inbound")
+            .and("partner", "ACME Corp.")
+            .and("documentType", "ORDERS");
+    flow.add(root);
+    final LogFmtMarker marker = LogFmtMarker.with("messageId", "MSG-0815")
+            .and("durationMs", 42L)
+            .and("sizeBytes", 16384);
+    marker.add(flow);
+    return marker;
+  }
+
+  @NonNull
+  private static LogFmtMarker frozenFlow() {
+    final LogFmtMarker root = LogFmtMarker.with("nodeName", "node-17")
+            .and("containerName", "edi-inbound-7d9f8c6b5-x2k4q");
+    final LogFmtMarker flow = LogFmtMarker.with("flow", "edi-inbound")
+            .and("partner", "ACME Corp.")
+            .and("documentType", "ORDERS");
+    flow.add(root);
+    return flow.freeze();
+  }
+
+  /**
+   * Creates a map of 15 MDC entries.
+   *
+   * @return The MDC entries
+   */
+  @NonNull
+  public static Map<String, String> mdc() {
+    final Map<String, String> mdc = new HashMap<>();
+    mdc.put("requestId", "3f1c9a2e-8d7b-4b8e-9c55-0f5a7d1e2b44");
+    mdc.put("traceId", "4bf92f3577b34da6a3ce929d0e0e4736");
+    mdc.put("spanId", "00f067aa0ba902b7");
+    mdc.put("tenant", "acme");
+    mdc.put("userId", "u-1234567");
+    mdc.put("session", "9b2c7d1e");
+    mdc.put("clientIp", "10.12.7.31");
+    mdc.put("httpMethod", "POST");
+    mdc.put("httpPath", "/api/v2/messages/outbound");
+    mdc.put("userAgent", "Apache-HttpClient/5.2.1 (Java/17.0.9)");
+    mdc.put("partner", "ACME Corp.");
+    mdc.put("channel", "AS2");
+    mdc.put("documentType", "INVOIC");
+    mdc.put("environment", "prod");
+    mdc.put("region", "eu-central-1");
+    return mdc;
+  }
+
+  @NonNull
+  private static LoggingEvent event(@NonNull final Level level,
+                                    @NonNull final String message,
+                                    @Nullable final Throwable throwable,
+                                    @NonNull final Object... args) {
+    final LoggingEvent event = new LoggingEvent(
+            Logger.class.getName(), LOGGER, level, message, throwable, args);
+    event.setThreadName("http-nio-8080-exec-7");
+    event.setCallerData(CALLER_DATA);
+    return event;
+  }
+
+  @NonNull
+  private static Throwable deepCause() {
+    Throwable cause = null;
+    for (int i = 0; i < 5; i++) {
+      try {
+        throwAtDepth(40, "Failure at level " + i, cause);
+      } catch (final IllegalStateException e) {
+        cause = e;
+      }
+    }
+    return cause;
+  }
+
+  private static void throwAtDepth(final int depth,
+                                   @NonNull final String message,
+                                   @Nullable final Throwable cause) {
+    if (depth == 0) {
+      throw new IllegalStateException(message, cause);
+    }
+    throwAtDepth(depth - 1, message, cause);
+  }
+}
@@ -0,0 +1,36 @@
+package com.ecosio.logfmt.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of the benchmarks JAR. Accepts the regular JMH command line options and always
+ * enables the GC profiler, so that each run reports the allocation rate per operation next to the
+ * throughput.
+ */
+public final class BenchmarkRunner {
+
+  private BenchmarkRunner() {
+
+  }
+
+  /**
+   * Runs the benchmarks selected by the given JMH command line options.
+   *
+   * @param args The JMH command line options
+   * @throws CommandLineOptionException If invalid command line options were provided
+   * @throws RunnerException If running the benchmarks failed
+   */
+  public static void main(final String[] args)
+          throws CommandLineOptionException, RunnerException {
+    new Runner(new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build())
+            .run();
+  }
+}
@@ -0,0 +1,94 @@
+package com.ecosio.logfmt.benchmark;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.LogFmtEncoder;
+import com.ecosio.logfmt.LogFmtLayout;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the generation of complete log lines via {@link LogFmtLayout#doLayout(ILoggingEvent)}
+ * and {@link LogFmtEncoder#encode(ILoggingEvent)} using the default field configuration.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LayoutBenchmark {
+
+  /**
+   * The kind of event to format.
+   */
+  @Param({"short", "mdc", "markers", "frozenMarkers", "exception"})
+  public String scenario;
+
+  private ILoggingEvent event;
+  private LogFmtLayout layout;
+  private LogFmtLayout recyclingLayout;
+  private LogFmtEncoder encoder;
+
+  /**
+   * Creates the event and the layouts to benchmark.
+   */
+  @Setup
+  public void setUp() {
+    event = BenchmarkEvents.create(scenario);
+
+    layout = new LogFmtLayout();
+    layout.setAppName("benchmark");
+    layout.start();
+
+    recyclingLayout = new LogFmtLayout();
+    recyclingLayout.setAppName("benchmark");
+    recyclingLayout.setRecycleBuffers(true);
+    recyclingLayout.start();
+
+    final LogFmtLayout encoderLayout = new LogFmtLayout();
+    encoderLayout.setAppName("benchmark");
+    encoder = new LogFmtEncoder();
+    encoder.setLayout(encoderLayout);
+    encoder.start();
+  }
+
+  /**
+   * Formats the event into a new {@link String}.
+   *
+   * @return The generated log line
+   */
+  @Benchmark
+  public String doLayout() {
+    return layout.doLayout(event);
+  }
+
+  /**
+   * Formats the event into a {@link String} using a recycled per-thread buffer.
+   *
+   * @return The generated log line
+   */
+  @Benchmark
+  public String doLayoutRecycled() {
+    return recyclingLayout.doLayout(event);
+  }
+
+  /**
+   * Formats the event into UTF-8 encoded bytes.
+   *
+   * @return The encoded log line
+   */
+  @Benchmark
+  public byte[] encode() {
+    return encoder.encode(event);
+  }
+}
@@ -0,0 +1,74 @@
+package com.ecosio.logfmt.benchmark;
+
+import com.ecosio.logfmt.ApplyCallbackFor;
+import com.ecosio.logfmt.LogFmtMarker;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the construction of {@link LogFmtMarker} objects as done on request paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogFmtMarkerBenchmark {
+
+  private final String messageId = "MSG-0815";
+  private final long durationMs = 42L;
+
+  /**
+   * Creates a marker with a single key-value pair.
+   *
+   * @return The created marker
+   */
+  @Benchmark
+  public LogFmtMarker single() {
+    return LogFmtMarker.with("messageId", messageId);
+  }
+
+  /**
+   * Creates a marker with five key-value pairs.
+   *
+   * @return The created marker
+   */
+  @Benchmark
+  public LogFmtMarker fiveKeyValues() {
+    return LogFmtMarker.with("messageId", messageId)
+            .and("durationMs", durationMs)
+            .and("partner", "ACME Corp.")
+            .and("documentType", "ORDERS")
+            .and("sizeBytes", 16384);
+  }
+
+  /**
+   * Creates a three level deep chain of markers.
+   *
+   * @return The outermost marker of the chain
+   */
+  @Benchmark
+  public LogFmtMarker nested() {
+    return BenchmarkEvents.nestedMarker();
+  }
+
+  /**
+   * Creates a marker with a callback for the message field.
+   *
+   * @return The created marker
+   */
+  @Benchmark
+  public LogFmtMarker withCallback() {
+    return LogFmtMarker.with("messageId", messageId)
+            .andCallback(ApplyCallbackFor.MESSAGE, (msg, keyValues) -> msg);
+  }
+}
@@ -0,0 +1,102 @@
+package com.ecosio.logfmt.benchmark;
+
+import com.ecosio.logfmt.RedactionRule;
+import com.ecosio.logfmt.utils.Redactor;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the combined pattern of a {@link Redactor} with applying each redaction rule on its
+ * own, for a growing number of rules.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RedactorBenchmark {
+
+  private static final List<RedactionRule> RULES = List.of(
+          rule("email", "[\\w.+-]+@[\\w-]+(?:\\.[\\w-]+)+", "@"),
+          new RedactionRule("customerId", "CUST-\\d{6}"),
+          rule("iban", "\\b[A-Z]{2}\\d{2}[A-Z0-9]{11,30}\\b", null),
+          new RedactionRule("apiKey", "sk_live_[A-Za-z0-9]{24}"),
+          new RedactionRule("creditCard", "\\b(?:\\d{4}[ -]?){3}\\d{4}\\b"),
+          new RedactionRule("phone", "\\+\\d{2} \\d{3} \\d{6,8}"),
+          new RedactionRule("ssn", "\\b\\d{3}-\\d{2}-\\d{4}\\b"),
+          new RedactionRule("ipv4", "\\b\\d{1,3}(?:\\.\\d{1,3}){3}\\b"));
+
+  /**
+   * The number of rules to apply. The first two rules have anchors, the third one has none.
+   */
+  @Param({"1", "2", "4", "8"})
+  public int rules;
+
+  /**
+   * The kind of value to redact.
+   */
+  @Param({"plain", "match"})
+  public String value;
+
+  private String input;
+  private Redactor redactor;
+  private Pattern[] patterns;
+
+  /**
+   * Compiles the rules and creates the value to redact.
+   */
+  @Setup
+  public void setUp() {
+    final List<RedactionRule> selected = RULES.subList(0, rules);
+    redactor = Redactor.compile(selected);
+    patterns = selected.stream().map(r -> Pattern.compile(r.getPattern())).toArray(Pattern[]::new);
+    input = switch (value) {
+      case "plain" -> "Processed document DOC-4711 for partner ACME Corp. in 42 ms";
+      case "match" -> "Sent invoice of CUST-004711 for AT611904300234573201 to jane@example.com";
+      default -> throw new IllegalArgumentException("Unknown value " + value);
+    };
+  }
+
+  private static RedactionRule rule(final String name, final String pattern, final String anchor) {
+    final RedactionRule rule = new RedactionRule(name, pattern);
+    rule.setAnchor(anchor);
+    return rule;
+  }
+
+  /**
+   * Redacts the value with the combined pattern of all rules.
+   *
+   * @return The redacted value
+   */
+  @Benchmark
+  public String combined() {
+    return redactor.redact(input);
+  }
+
+  /**
+   * Redacts the value by applying the pattern of each rule on its own.
+   *
+   * @return The redacted value
+   */
+  @Benchmark
+  public String sequential() {
+    String result = input;
+    for (final Pattern pattern : patterns) {
+      result = pattern.matcher(result).replaceAll("***");
+    }
+    return result;
+  }
+}
@@ -0,0 +1,85 @@
+package com.ecosio.logfmt.benchmark;
+
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import com.ecosio.logfmt.utils.StringUtils;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the value checks and escaping of {@link StringUtils} on typical values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringUtilsBenchmark {
+
+  /**
+   * The kind of value to process.
+   */
+  @Param({"token", "sentence", "escaped", "stacktrace"})
+  public String value;
+
+  private String input;
+  private StringBuilder sb;
+
+  /**
+   * Creates the value to process.
+   */
+  @Setup
+  public void setUp() {
+    input = switch (value) {
+      case "token" -> "edi-inbound-7d9f8c6b5-x2k4q";
+      case "sentence" -> "Processed document DOC-4711 for partner ACME Corp. in 42 ms";
+      case "escaped" -> "Received \"ORDERS\" document:\n\tpath=C:\\inbound\\orders.edi";
+      case "stacktrace" ->
+              ThrowableProxyUtil.asString(BenchmarkEvents.deepException().getThrowableProxy());
+      default -> throw new IllegalArgumentException("Unknown value " + value);
+    };
+    sb = new StringBuilder(input.length() * 2 + 2);
+  }
+
+  /**
+   * Checks whether the value needs to be put in quotes.
+   *
+   * @return Whether the value needs quoting
+   */
+  @Benchmark
+  public boolean needsQuoting() {
+    return StringUtils.needsQuoting(input);
+  }
+
+  /**
+   * Escapes the value.
+   *
+   * @return The escaped value
+   */
+  @Benchmark
+  public StringBuilder escapeValue() {
+    return StringUtils.escapeValue(input);
+  }
+
+  /**
+   * Appends the value, escaped and quoted if needed, to a reused buffer.
+   *
+   * @return The number of characters appended
+   */
+  @Benchmark
+  public int appendValue() {
+    sb.setLength(0);
+    StringUtils.appendValue(sb, input);
+    return sb.length();
+  }
+}
@@ -0,0 +1,56 @@
+package com.ecosio.logfmt;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+
+/**
+ * The admissible ways of handling a key that is written to the same log line more than once, i.e.
+ * once from MDC and once from a {@link LogFmtMarker}.
+ *
+ * @since 1.2.0
+ */
+public enum DuplicateKeyPolicy {
+  /**
+   * Writes every occurrence of a key to the log line, which is the default.
+   */
+  KEEP_ALL("keepAll"),
+  /**
+   * Only writes the first occurrence of a key to the log line and drops subsequent ones.
+   */
+  FIRST_WINS("firstWins"),
+  /**
+   * Only keeps the last occurrence of a key within the log line. Preceding occurrences are
+   * removed from the log line once all key-value pairs of the event were written.
+   */
+  LAST_WINS("lastWins"),
+  /**
+   * Writes subsequent occurrences of a key with a numeric suffix, i.e. <code>user_2</code>, so
+   * that no value gets lost.
+   */
+  SUFFIX_RENAME("suffixRename");
+
+  /**
+   * The name of the policy within the configuration.
+   */
+  private final String configName;
+
+  DuplicateKeyPolicy(@NonNull final String configName) {
+    this.configName = configName;
+  }
+
+  /**
+   * Returns the policy with the given configuration name, ignoring case.
+   *
+   * @param name The configuration name of the policy, i.e. <em>firstWins</em>
+   * @return The policy with the given name
+   * @throws IllegalArgumentException If no policy with the given name exists
+   */
+  @NonNull
+  public static DuplicateKeyPolicy forName(@NonNull final String name) {
+    for (final DuplicateKeyPolicy policy : values()) {
+      if (policy.configName.equalsIgnoreCase(name.trim())) {
+        return policy;
+      }
+    }
+    throw new IllegalArgumentException("Unknown duplicate key policy " + name);
+  }
+}
@@ -0,0 +1,187 @@
+package com.ecosio.logfmt;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.encoder.EncoderBase;
+import com.ecosio.logfmt.internal.BufferRecycler;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * Logback encoder that formats log events in the <em>logfmt</em> format and writes the generated
+ * log line as UTF-8 encoded bytes.
+ *
+ * <p>In contrast to wrapping {@link LogFmtLayout} in a
+ * {@link ch.qos.logback.core.encoder.LayoutWrappingEncoder LayoutWrappingEncoder}, which formats
+ * each event into a new {@link String} that then gets converted to bytes, this encoder runs the
+ * configured key-value appender of the layout on a per-thread {@link StringBuilder} and encodes
+ * its content straight into the returned byte array, which is sized exactly to the encoded line.
+ * The buffer is reused for subsequent events of the same platform thread, so the only allocation
+ * left per event is the returned byte array. The size of the retained buffers is limited by
+ * {@link LogFmtLayout#setMaxRetainedBufferSize(int)}.
+ *
+ * <p>The layout is configured the same way as with the layout wrapping encoder:
+ *
+ * <pre><code>
+ * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+ *   &lt;encoder class="com.ecosio.logfmt.LogFmtEncoder"&gt;
+ *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+ *       &lt;appName&gt;test-app&lt;/appName&gt;
+ *     &lt;/layout&gt;
+ *   &lt;/encoder&gt;
+ * &lt;/appender&gt;</code></pre>
+ *
+ * <p>If no layout is specified a {@link LogFmtLayout} with its default configuration is used.
+ * Note that the output of this encoder is always UTF-8 encoded.
+ *
+ * @since 1.2.0
+ */
+public class LogFmtEncoder extends EncoderBase<ILoggingEvent> {
+
+  /**
+   * The layout used to generate the log line.
+   */
+  private LogFmtLayout layout;
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * encoder. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;encoder class="com.ecosio.logfmt.LogFmtEncoder"&gt;
+   *   &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *     &lt;prefix&gt;dev&lt;/prefix&gt;
+   *   &lt;/layout&gt;
+   * &lt;/encoder&gt;</code></pre>
+   * the given layout and its configuration is used to generate the log lines.
+   *
+   * @param layout The layout to format log events with
+   */
+  public void setLayout(@NonNull final LogFmtLayout layout) {
+    this.layout = layout;
+  }
+
+  /**
+   * Returns the layout used by this encoder to format log events.
+   *
+   * @return The layout used to format log events
+   */
+  @Nullable
+  public LogFmtLayout getLayout() {
+    return layout;
+  }
+
+  @Override
+  public void start() {
+    if (layout == null) {
+      layout = new LogFmtLayout();
+    }
+    if (layout.getContext() == null) {
+      layout.setContext(getContext());
+    }
+    if (!layout.isStarted()) {
+      layout.start();
+    }
+    super.start();
+  }
+
+  @Override
+  public void stop() {
+    super.stop();
+    if (layout != null) {
+      layout.stop();
+    }
+  }
+
+  @Override
+  @Nullable
+  public byte[] headerBytes() {
+    return null;
+  }
+
+  @Override
+  @Nullable
+  public byte[] footerBytes() {
+    return null;
+  }
+
+  @Override
+  @NonNull
+  public byte[] encode(@NonNull final ILoggingEvent event) {
+    if (layout == null) {
+      start();
+    }
+    final BufferRecycler recycler = layout.getBufferRecycler();
+    final StringBuilder sb = recycler.acquireStringBuilder();
+    try {
+      layout.layoutInto(sb, event);
+      final byte[] bytes = new byte[utf8Length(sb)];
+      encodeUtf8(sb, bytes);
+      return bytes;
+    } finally {
+      recycler.releaseStringBuilder(sb);
+    }
+  }
+
+  /**
+   * Calculates the number of bytes needed to encode the given characters as UTF-8.
+   *
+   * @param chars The characters to encode
+   * @return The number of bytes the UTF-8 encoded characters will occupy
+   */
+  private static int utf8Length(@NonNull final CharSequence chars) {
+    final int length = chars.length();
+    int bytes = length;
+    for (int i = 0; i < length; i++) {
+      final char c = chars.charAt(i);
+      if (c >= 0x80) {
+        if (c < 0x800) {
+          bytes += 1;
+        } else if (Character.isHighSurrogate(c) && i + 1 < length
+                && Character.isLowSurrogate(chars.charAt(i + 1))) {
+          bytes += 2;
+          i++;
+        } else if (!Character.isSurrogate(c)) {
+          bytes += 2;
+        }
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * Encodes the given characters as UTF-8 into the provided byte array, which needs to be large
+   * enough to hold the encoded characters as calculated by {@link #utf8Length(CharSequence)}.
+   * Unpaired surrogate characters are replaced by <code>?</code> just like
+   * {@link String#getBytes} does.
+   *
+   * @param chars The characters to encode
+   * @param out   The byte array to write the encoded characters to
+   */
+  private static void encodeUtf8(@NonNull final CharSequence chars, @NonNull final byte[] out) {
+    final int length = chars.length();
+    int pos = 0;
+    int i = 0;
+    while (i < length) {
+      final char c = chars.charAt(i++);
+      if (c < 0x80) {
+        out[pos++] = (byte) c;
+      } else if (c < 0x800) {
+        out[pos++] = (byte) (0xC0 | (c >> 6));
+        out[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i < length
+              && Character.isLowSurrogate(chars.charAt(i))) {
+        final int cp = Character.toCodePoint(c, chars.charAt(i++));
+        out[pos++] = (byte) (0xF0 | (cp >> 18));
+        out[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        out[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        out[pos++] = (byte) (0x80 | (cp & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        out[pos++] = '?';
+      } else {
+        out[pos++] = (byte) (0xE0 | (c >> 12));
+        out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        out[pos++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+  }
+}
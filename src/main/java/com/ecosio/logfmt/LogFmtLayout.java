@@ -1,18 +1,23 @@
 package com.ecosio.logfmt;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.LayoutBase;
-import com.ecosio.logfmt.internal.NativeKey;
+import ch.qos.logback.core.util.Duration;
+import com.ecosio.logfmt.internal.BufferRecycler;
+import com.ecosio.logfmt.internal.ErrorFingerprints;
+import com.ecosio.logfmt.internal.MdcSelector;
 import com.ecosio.logfmt.internal.State;
+import com.ecosio.logfmt.internal.ThrowableRenderer;
 import com.ecosio.logfmt.internal.appender.KeyValueAppender;
-import com.ecosio.logfmt.utils.StringUtils;
+import com.ecosio.logfmt.utils.CredentialScrubber;
+import com.ecosio.logfmt.utils.KeyMasker;
+import com.ecosio.logfmt.utils.Redactor;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
+import java.util.Map;
 
 /**
  * Logback Layout that format logs with logfmt format (ie. {@code level="debug" ... key1="value1"
@@ -24,15 +29,50 @@ import java.util.Locale;
 public class LogFmtLayout extends LayoutBase<ILoggingEvent> {
 
   /**
-   * An optional prefix property value. If a prefix is specified it will always be added at the
-   * start of the log line.
+   * Whether the buffers used to generate log lines should be reused by subsequent events of the
+   * same thread.
    */
-  private String prefix;
+  private boolean recycleBuffers;
   /**
-   * An optional property named <code>app</code> that has the name of the application that produced
-   * this log line as value.
+   * The comma separated list of properties whose values should be masked.
    */
-  private String appName;
+  private String maskPasswords;
+  /**
+   * Whether the properties whose values should be masked are matched case-insensitively.
+   */
+  private boolean maskPasswordsIgnoreCase;
+  /**
+   * The comma separated list of MDC keys and patterns to write to the log line.
+   */
+  private String mdcInclude;
+  /**
+   * The comma separated list of MDC keys and patterns to never write to the log line.
+   */
+  private String mdcExclude;
+  /**
+   * The comma separated list of MDC keys to write first.
+   */
+  private String mdcPromote;
+  /**
+   * The maximum number of frames written per throwable or a negative value if unlimited.
+   */
+  private int maxStackFrames = -1;
+  /**
+   * The maximum nesting depth of causes written or a negative value if unlimited.
+   */
+  private int maxCauseDepth = -1;
+  /**
+   * The comma separated list of package prefixes whose stack frames are not written.
+   */
+  private String excludedFramePackages;
+  /**
+   * The maximum length of the written stack trace or a negative value if unlimited.
+   */
+  private int maxErrorLength = -1;
+  /**
+   * The user-defined rules to redact log values with.
+   */
+  private final List<RedactionRule> redactionRules = new ArrayList<>();
 
   /**
    * The internal state of this layout formatter.
@@ -70,7 +110,7 @@ public class LogFmtLayout extends LayoutBase<ILoggingEvent> {
    *               configuration property is present no prefix will be added to the log message
    */
   public void setPrefix(@Nullable final String prefix) {
-    this.prefix = prefix;
+    state.setPrefix(prefix);
   }
 
   /**
@@ -93,7 +133,7 @@ public class LogFmtLayout extends LayoutBase<ILoggingEvent> {
    *               in the configuration XML then no app name will be added to the log message
    */
   public void setAppName(@Nullable final String appName) {
-    this.appName = appName;
+    state.setAppName(appName);
   }
 
   /**
@@ -110,13 +150,26 @@ public class LogFmtLayout extends LayoutBase<ILoggingEvent> {
    *   &lt;/encoder&gt;
    * &lt;/appender&gt;</code></pre>
    * the default date-time format ({@code yyyy-MM-dd'T'HH:mm:ss}) is replaced with the one
-   * provided in the XML configuration.
+   * provided in the XML configuration. The format follows the patterns of
+   * {@link java.time.format.DateTimeFormatter}, just like logback's <code>%date</code> conversion
+   * word does, and is compiled once when it is configured.
+   *
+   * <p>Instead of a pattern one of the following time modes can be specified, which render the
+   * instant the event was created at without going through a formatter:
+   * <ul>
+   *   <li><em>epochMillis</em>: the milliseconds since the epoch, i.e. {@code 1512051025123}</li>
+   *   <li><em>epochMicros</em>: the microseconds since the epoch, i.e.
+   *   {@code 1512051025123456}</li>
+   *   <li><em>iso8601Nanos</em>: the UTC date and time with nanosecond precision, i.e.
+   *   {@code 2017-11-30T14:10:25.123456789Z}</li>
+   * </ul>
    *
-   * @param timeFormat The new date and time format to use for representing the time value
+   * @param timeFormat The new date and time format or time mode to use for representing the time
+   *                   value
    * @throws IllegalAccessException If an invalid time format is passed in
+   * @throws IllegalArgumentException If an invalid time format is passed in
    */
   public void setTimeFormat(@NonNull final String timeFormat) throws IllegalAccessException {
-    new SimpleDateFormat(timeFormat, Locale.getDefault());
     state.setTimeFormat(timeFormat);
   }
 
@@ -153,6 +206,372 @@ public class LogFmtLayout extends LayoutBase<ILoggingEvent> {
     state.setCustomAppender(customAppender);
   }
 
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;classNameSource&gt;loggerName&lt;/classNameSource&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will derive the <em>package</em> and <em>module</em> fields from the
+   * name of the logger instead of the caller data of the event. Caller data requires logback to
+   * capture the stack of each logging call, which is one of the most expensive parts of logging,
+   * while the logger name is available for free. For loggers obtained via
+   * <code>LoggerFactory.getLogger(Foo.class)</code> both yield the same result. Supported sources
+   * are <em>callerData</em>, which is the default, and <em>loggerName</em>.
+   *
+   * @param classNameSource The source of the class name the <em>package</em> and <em>module</em>
+   *                        fields are derived from
+   * @throws IllegalArgumentException If an unknown source is given
+   * @since 1.2.0
+   */
+  public void setClassNameSource(@NonNull final String classNameSource) {
+    if ("loggerName".equalsIgnoreCase(classNameSource.trim())) {
+      state.setCallerDataLevel(Level.OFF);
+    } else if ("callerData".equalsIgnoreCase(classNameSource.trim())) {
+      state.setCallerDataLevel(Level.ALL);
+    } else {
+      throw new IllegalArgumentException("Unknown class name source " + classNameSource);
+    }
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;callerDataLevel&gt;WARN&lt;/callerDataLevel&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will only use the caller data of events with level <em>WARN</em> or
+   * above to derive the <em>package</em> and <em>module</em> fields. For events of lower levels
+   * the fields are derived from the logger name, as if
+   * {@link #setClassNameSource(String) classNameSource} was set to <em>loggerName</em>.
+   *
+   * @param callerDataLevel The minimal level of events to use caller data for
+   * @throws IllegalArgumentException If an unknown level is given
+   * @since 1.2.0
+   */
+  public void setCallerDataLevel(@NonNull final String callerDataLevel) {
+    final Level level = Level.toLevel(callerDataLevel.trim(), null);
+    if (level == null) {
+      throw new IllegalArgumentException("Unknown caller data level " + callerDataLevel);
+    }
+    state.setCallerDataLevel(level);
+  }
+
+  /**
+   * Specifies whether the current configuration of this layout may use the caller data of events.
+   * If not, appenders that capture caller data, i.e. via the <em>includeCallerData</em> option of
+   * logback's <em>AsyncAppender</em>, can skip capturing it.
+   *
+   * @return <code>true</code> if the <em>package</em> or <em>module</em> field is configured and
+   *         is derived from caller data for at least some events; <code>false</code> otherwise
+   * @since 1.2.0
+   */
+  public boolean isCallerDataRequired() {
+    return state.getPlan().isClassNameRequired()
+            && state.getCallerDataLevel().toInt() != Level.OFF_INT;
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;mdcInclude&gt;tenant,requestId,http*&lt;/mdcInclude&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will only write the listed MDC properties to the log line. Entries are
+   * trimmed and may start or end with an asterisk to include all properties ending respectively
+   * starting with the given text. If only plain property names are listed, the properties are
+   * looked up directly instead of iterating over the whole MDC.
+   *
+   * @param mdcInclude A comma separated list of the MDC properties to write to the log
+   *                   line
+   * @since 1.2.0
+   */
+  public void setMdcInclude(@NonNull final String mdcInclude) {
+    this.mdcInclude = mdcInclude;
+    updateMdcSelector();
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;mdcExclude&gt;payload,debug*&lt;/mdcExclude&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will never write the listed MDC properties to the log line, which is
+   * useful to drop large values put into the MDC by libraries. Entries are trimmed and may start
+   * or end with an asterisk to exclude all properties ending respectively starting with the given
+   * text. Excluded properties are dropped even if they are listed in
+   * {@link #setMdcInclude(String) mdcInclude} or {@link #setMdcPromote(String) mdcPromote}.
+   *
+   * @param mdcExclude A comma separated list of the MDC properties to never write to
+   *                   the log line
+   * @since 1.2.0
+   */
+  public void setMdcExclude(@NonNull final String mdcExclude) {
+    this.mdcExclude = mdcExclude;
+    updateMdcSelector();
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;mdcPromote&gt;tenant,requestId&lt;/mdcPromote&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will write the listed MDC properties first and in the listed order,
+   * followed by the remaining MDC properties. A fixed order of properties improves the compression
+   * of log lines in downstream systems. Promoted properties are looked up directly and are written
+   * even if they are not listed in {@link #setMdcInclude(String) mdcInclude}.
+   *
+   * @param mdcPromote A comma separated list of the MDC properties to write first, in
+   *                   the order they should be written in
+   * @since 1.2.0
+   */
+  public void setMdcPromote(@NonNull final String mdcPromote) {
+    this.mdcPromote = mdcPromote;
+    updateMdcSelector();
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;duplicateKeys&gt;firstWins&lt;/duplicateKeys&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will write a key only once per log line, even if it is defined by MDC
+   * as well as by a {@link LogFmtMarker}. Supported policies are <em>keepAll</em>, which writes
+   * every occurrence and is the default, <em>firstWins</em>, <em>lastWins</em> and
+   * <em>suffixRename</em>, which writes subsequent occurrences as <code>key_2</code>,
+   * <code>key_3</code> and so on. See {@link DuplicateKeyPolicy} for details.
+   *
+   * @param duplicateKeys The name of the policy to apply to keys that are written to the same log
+   *                      line more than once
+   * @throws IllegalArgumentException If an unknown policy is given
+   * @since 1.2.0
+   */
+  public void setDuplicateKeys(@NonNull final String duplicateKeys) {
+    state.setDuplicateKeyPolicy(DuplicateKeyPolicy.forName(duplicateKeys));
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;maxStackFrames&gt;30&lt;/maxStackFrames&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will write at most 30 frames of each throwable within the
+   * <em>error</em> field and replace the remaining ones by a <code>... N frames truncated</code>
+   * line. Frames shared with the enclosing trace are always folded into a
+   * <code>... N common frames omitted</code> line, like logback does. By default all frames are
+   * written.
+   *
+   * @param maxStackFrames The maximum number of frames to write per throwable or a
+   *                       negative value to write all frames
+   * @since 1.2.0
+   */
+  public void setMaxStackFrames(final int maxStackFrames) {
+    this.maxStackFrames = maxStackFrames;
+    updateThrowableRenderer();
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;maxCauseDepth&gt;2&lt;/maxCauseDepth&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will write at most two levels of causes and suppressed exceptions of a
+   * logged throwable and replace deeper ones by a <code>... N causes omitted</code> respectively
+   * <code>... N suppressed omitted</code> line. A depth of <code>0</code> only writes the logged
+   * throwable itself. By default all causes are written.
+   *
+   * @param maxCauseDepth The maximum nesting depth of causes and suppressed exceptions to
+   *                      write or a negative value to write all of them
+   * @since 1.2.0
+   */
+  public void setMaxCauseDepth(final int maxCauseDepth) {
+    this.maxCauseDepth = maxCauseDepth;
+    updateThrowableRenderer();
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;excludedFramePackages&gt;org.springframework.,jdk.&lt;/excludedFramePackages&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will not write stack frames of classes whose name starts with one of
+   * the listed prefixes. Each run of consecutive excluded frames is replaced by a single
+   * <code>... N filtered</code> line, so the trace still shows where frames were left out.
+   * Excluded frames do not count towards the {@link #setMaxStackFrames(int) maxStackFrames}
+   * limit.
+   *
+   * @param excludedFramePackages A comma separated list of the package prefixes whose
+   *                              frames should not be written
+   * @since 1.2.0
+   */
+  public void setExcludedFramePackages(@NonNull final String excludedFramePackages) {
+    this.excludedFramePackages = excludedFramePackages;
+    updateThrowableRenderer();
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;maxErrorLength&gt;8192&lt;/maxErrorLength&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will write at most 8192 characters of the escaped stack trace into the
+   * <em>error</em> field. The trace is cut after the last complete line that fits into the
+   * budget and ends with a <code>... truncated</code> line, which is included in the budget. The
+   * budget applies to the trace as written, i.e. after callbacks and redaction rules were
+   * applied. By default the length of the stack trace is not limited.
+   *
+   * @param maxErrorLength The maximum number of characters of the stack trace to write or
+   *                       a negative value to not limit its length
+   * @throws IllegalArgumentException if the budget is too small to hold the truncation line
+   * @since 1.2.0
+   */
+  public void setMaxErrorLength(final int maxErrorLength) {
+    this.maxErrorLength = maxErrorLength;
+    updateThrowableRenderer();
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;stackTraceLevel&gt;ERROR&lt;/stackTraceLevel&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will only write the full stack trace of exceptions logged with level
+   * <em>ERROR</em> or above. Exceptions of events with lower levels are summarized by the
+   * <code>error_type</code>, <code>error_msg</code> and <code>root_cause</code> properties
+   * instead, which hold the class name and message of the exception and the class name and
+   * message of its innermost cause. No stack trace is built for these events at all, and
+   * {@link ApplyCallbackFor#ERROR} callbacks are not applied to them. By default the stack trace
+   * of every exception is written.
+   *
+   * @param stackTraceLevel The minimal level of events to write stack traces for
+   * @throws IllegalArgumentException If an unknown level is given
+   * @since 1.2.0
+   */
+  public void setStackTraceLevel(@NonNull final String stackTraceLevel) {
+    final Level level = Level.toLevel(stackTraceLevel.trim(), null);
+    if (level == null) {
+      throw new IllegalArgumentException("Unknown stack trace level " + stackTraceLevel);
+    }
+    state.setStackTraceLevel(level);
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;errorRepeatWindow&gt;1 minute&lt;/errorRepeatWindow&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will write the stack trace of a recurring exception only once per
+   * minute. Each of these lines carries an <code>error_hash</code> property holding the
+   * fingerprint of the exception, which is computed from the classes and top frames of the
+   * exception and its causes. Subsequent occurrences within the same minute only write the
+   * <code>error_hash</code> and an <code>error_repeat</code> property counting the occurrences
+   * within the window instead of the whole <em>error</em> field. The window accepts the duration
+   * formats of logback, i.e. <em>500 milliseconds</em> or <em>30 seconds</em>. A window of zero,
+   * which is the default, writes every stack trace.
+   *
+   * @param errorRepeatWindow The duration within which the stack trace of a recurring exception
+   *                          is written only once
+   * @throws IllegalArgumentException If the duration can't be parsed
+   * @since 1.2.0
+   */
+  public void setErrorRepeatWindow(@NonNull final String errorRepeatWindow) {
+    final long windowMillis = Duration.valueOf(errorRepeatWindow.trim()).getMilliseconds();
+    state.setErrorFingerprints(windowMillis > 0 ? new ErrorFingerprints(windowMillis) : null);
+  }
+
   /**
    * This method will be called by logback based on the respective XML configuration of this
    * layout. If the XML contains a definition like
@@ -166,33 +585,231 @@ public class LogFmtLayout extends LayoutBase<ILoggingEvent> {
    *     &lt;/layout&gt;
    *   &lt;/encoder&gt;
    * &lt;/appender&gt;</code></pre>
-   * <em>LogFmtLayout</em> is configured to mask values of the listed properties.
+   * <em>LogFmtLayout</em> is configured to mask values of the listed properties. Entries are
+   * trimmed and may start or end with an asterisk, i.e. <code>*token</code> or
+   * <code>secret*</code>, to mask all properties ending respectively starting with the given text.
    *
    * @param propsToMask A comma separated list of properties that should be masked when they
    *                    appear in a log statement. These properties can either be part of MDC
    *                    or provided via a {@link LogFmtMarker}
    */
   public void setMaskPasswords(@NonNull final String propsToMask) {
-    final List<String> maskPasswords = new ArrayList<>();
-    Collections.addAll(maskPasswords, propsToMask.split(","));
-    state.setMaskPasswords(maskPasswords);
+    this.maskPasswords = propsToMask;
+    state.setKeyMasker(KeyMasker.compile(maskPasswords, maskPasswordsIgnoreCase));
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;maskPasswords&gt;password,*token&lt;/maskPasswords&gt;
+   *       &lt;maskPasswordsIgnoreCase&gt;true&lt;/maskPasswordsIgnoreCase&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will match the properties listed in
+   * {@link #setMaskPasswords(String) maskPasswords} case-insensitively, i.e. it will mask the
+   * values of <em>Password</em> and <em>accessToken</em> as well.
+   *
+   * @param maskPasswordsIgnoreCase <code>true</code> to match the properties to mask
+   *                                case-insensitively; <code>false</code> to match them
+   *                                case-sensitively, which is the default
+   * @since 1.2.0
+   */
+  public void setMaskPasswordsIgnoreCase(final boolean maskPasswordsIgnoreCase) {
+    this.maskPasswordsIgnoreCase = maskPasswordsIgnoreCase;
+    state.setKeyMasker(KeyMasker.compile(maskPasswords, maskPasswordsIgnoreCase));
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;credentialDetectors&gt;bearer,jwt,passwordParam&lt;/credentialDetectors&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will mask the credentials found by the listed detectors within log
+   * messages that are marked with a <code>CONFIDENTIAL</code> marker. Supported detectors are
+   * <em>basicAuth</em> for basic authorization headers, <em>urlAuth</em> for passwords within URLs,
+   * <em>bearer</em> for bearer tokens, <em>jwt</em> for JSON web tokens and <em>passwordParam</em>
+   * for <code>password=...</code> query or form parameters. By default only basic authorization
+   * headers and passwords within URLs are masked. The whole message is scanned only once,
+   * regardless of the number of detectors listed.
+   *
+   * @param detectors A comma separated list of the detectors to apply to confidential log messages
+   * @throws IllegalArgumentException If an unknown detector is listed
+   * @since 1.2.0
+   */
+  public void setCredentialDetectors(@NonNull final String detectors) {
+    state.setCredentialScrubber(CredentialScrubber.of(detectors));
+  }
+
+  /**
+   * This method will be called by logback for each <code>redactionRule</code> element within the
+   * XML configuration of this layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;redactionRule&gt;
+   *         &lt;name&gt;customerId&lt;/name&gt;
+   *         &lt;pattern&gt;CUST-\d{6}&lt;/pattern&gt;
+   *       &lt;/redactionRule&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will replace any text matching the pattern of the rule within the
+   * values of the <em>msg</em> and <em>error</em> fields as well as within the values of MDC and
+   * {@link LogFmtMarker} properties by <code>***</code> or the configured replacement. All rules
+   * are combined into a single regular expression, so each value is only scanned once regardless
+   * of the number of rules.
+   *
+   * @param redactionRule The rule to apply additionally to the rules added before
+   * @throws IllegalArgumentException If the rule has no name or no valid pattern
+   * @since 1.2.0
+   */
+  public void addRedactionRule(@NonNull final RedactionRule redactionRule) {
+    final List<RedactionRule> rules = new ArrayList<>(redactionRules);
+    rules.add(redactionRule);
+    state.setRedactor(Redactor.compile(rules));
+    redactionRules.add(redactionRule);
+  }
+
+  /**
+   * Returns the number of replacements each configured redaction rule performed so far, which
+   * helps to identify rules that match more often than expected.
+   *
+   * @return A map holding the name of each redaction rule and its number of replacements in the
+   *         order the rules were added in
+   * @since 1.2.0
+   */
+  @NonNull
+  public Map<String, Long> getRedactionHits() {
+    return state.getRedactor().getHits();
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;recycleBuffers&gt;true&lt;/recycleBuffers&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * <em>LogFmtLayout</em> will reuse the {@link StringBuilder} a log line is generated in for
+   * subsequent events of the same platform thread instead of allocating a new one per event.
+   * Virtual threads will always use a new, properly sized buffer.
+   *
+   * @param recycleBuffers <code>true</code> to reuse buffers per thread; <code>false</code> to
+   *                       allocate a new buffer for each event, which is the default
+   * @since 1.2.0
+   */
+  public void setRecycleBuffers(final boolean recycleBuffers) {
+    this.recycleBuffers = recycleBuffers;
+  }
+
+  /**
+   * This method will be called by logback based on the respective XML configuration of this
+   * layout. If the XML contains a definition like
+   *
+   * <pre><code>
+   * &lt;appender name="STDOUT" class="ch.qos.logback.core.ConsoleAppender"&gt;
+   *   &lt;withJansi>false&lt;/withJansi&gt;
+   *   &lt;encoder class="ch.qos.logback.core.encoder.LayoutWrappingEncoder"&gt;
+   *     &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+   *       &lt;recycleBuffers&gt;true&lt;/recycleBuffers&gt;
+   *       &lt;maxRetainedBufferSize&gt;16384&lt;/maxRetainedBufferSize&gt;
+   *     &lt;/layout&gt;
+   *   &lt;/encoder&gt;
+   * &lt;/appender&gt;</code></pre>
+   * buffers that had to grow beyond 16384 characters, i.e. due to a huge stacktrace, will not be
+   * kept for subsequent events. The default limit is 65536 characters. This limit applies to the
+   * buffers reused by {@link LogFmtEncoder} as well.
+   *
+   * @param maxRetainedBufferSize The maximum size of a buffer that is kept for subsequent events
+   * @since 1.2.0
+   */
+  public void setMaxRetainedBufferSize(final int maxRetainedBufferSize) {
+    state.getBufferRecycler().setMaxRetainedSize(maxRetainedBufferSize);
+  }
+
+  private void updateMdcSelector() {
+    state.setMdcSelector(MdcSelector.compile(mdcInclude, mdcExclude, mdcPromote));
+  }
+
+  private void updateThrowableRenderer() {
+    state.setThrowableRenderer(ThrowableRenderer.compile(
+            maxStackFrames, maxCauseDepth, excludedFramePackages, maxErrorLength));
+  }
+
+  /**
+   * Compiles the current configuration of this layout into the plan used to format subsequent
+   * events and starts the layout. Configuration changes applied after the layout was started will
+   * cause the plan to get compiled again on the next event.
+   */
+  @Override
+  public void start() {
+    state.compile();
+    super.start();
   }
 
   @Override
   public String doLayout(@NonNull final ILoggingEvent event) {
-    final StringBuilder sb = new StringBuilder();
-    if (prefix != null) {
-      sb.append("prefix=").append(prefix).append(' ');
-    }
-    if (appName != null) {
-      StringUtils.appendKeyValueAndEscape(sb, NativeKey.APP.toString(), appName);
+    final BufferRecycler recycler = state.getBufferRecycler();
+    if (!recycleBuffers) {
+      final StringBuilder sb = recycler.newStringBuilder();
+      layoutInto(sb, event);
+      recycler.recordLength(sb.length());
+      return sb.toString();
     }
 
-    for (final KeyValueAppender keyValueAppender : state.getAppender()) {
-      keyValueAppender.append(sb, event);
+    final StringBuilder sb = recycler.acquireStringBuilder();
+    try {
+      layoutInto(sb, event);
+      return sb.toString();
+    } finally {
+      recycler.releaseStringBuilder(sb);
     }
-    sb.setCharAt(sb.length() - 1, '\n');
+  }
+
+  /**
+   * Returns the recycler handing out the buffers used to generate log lines.
+   *
+   * @return The buffer recycler of this layout
+   */
+  @NonNull
+  BufferRecycler getBufferRecycler() {
+    return state.getBufferRecycler();
+  }
 
-    return sb.toString();
+  /**
+   * Formats the given event and appends the generated log line, including the trailing line
+   * break, to the provided {@link StringBuilder}. This is the shared formatting routine of
+   * {@link #doLayout(ILoggingEvent)} and {@link LogFmtEncoder}, which allows the latter to reuse
+   * its buffers instead of going through an intermediate {@link String}.
+   *
+   * @param sb    The {@link StringBuilder} object to append the formatted log line to
+   * @param event The event to format
+   */
+  void layoutInto(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
+    state.getPlan().format(sb, event);
   }
 }
@@ -1,20 +1,31 @@
 package com.ecosio.logfmt;
 
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.KeyValueFragment;
+import com.ecosio.logfmt.internal.MarkerAccess;
+import com.ecosio.logfmt.internal.NativeKey;
+import com.ecosio.logfmt.utils.KeyMasker;
+import com.ecosio.logfmt.utils.Redactor;
+import com.ecosio.logfmt.utils.StringUtils;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.io.Serial;
+import java.util.AbstractList;
 import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.EnumMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.WeakHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 import org.slf4j.Marker;
 
 /**
@@ -49,6 +60,12 @@ import org.slf4j.Marker;
  * class directly, which will create a new instance of this class along the way, or via
  * {@link #andCallback(ApplyCallbackFor, BiFunction)} on an existing instance directly.
  *
+ * <p>Key-value pairs are stored in two parallel arrays that grow geometrically, so adding a pair
+ * does not allocate any per-entry object. The list of referenced markers is only allocated once
+ * the first reference is added. Values added via {@link #and(String, Supplier)} are computed only
+ * once the marker is written to a log line, at most once per log event. Primitive numbers are
+ * stored in a third parallel array without boxing them.
+ *
  * @author Roman Vottner
  */
 public final class LogFmtMarker implements Marker {
@@ -58,34 +75,97 @@ public final class LogFmtMarker implements Marker {
    */
   @Serial
   private static final long serialVersionUID = 3115377491590295959L;
+  /**
+   * The number of key-value pairs a marker can hold before its arrays need to grow for the first
+   * time.
+   */
+  private static final int INITIAL_CAPACITY = 4;
+
+  static {
+    // the layout renders markers via this hook, which keeps internal types out of the public API
+    MarkerAccess.register(new Access());
+  }
 
   /**
    * The human-readable name of this marker object.
    */
   private final String name;
   /**
-   * References to other nested marker objects.
+   * Whether this marker is immutable and renders its key-value pairs only once.
+   */
+  private final boolean frozen;
+
+  /**
+   * References to other nested marker objects or <code>null</code> if no reference was added yet.
+   */
+  private List<Marker> references;
+  /**
+   * The keys of the key-value pairs this marker contains which should be added to the LogFMT
+   * formatted log line. Only the first {@link #size} entries are used.
+   */
+  private String[] keys = new String[INITIAL_CAPACITY];
+  /**
+   * The values of the key-value pairs this marker contains, stored at the same index as their key.
+   */
+  private Object[] values = new Object[INITIAL_CAPACITY];
+  /**
+   * The bits of primitive <code>int</code>, <code>long</code>, <code>float</code> and
+   * <code>double</code> values, stored at the same index as their key, or <code>null</code> if no
+   * primitive value was added yet. The value array holds a {@link Primitive} tag at these indexes.
+   */
+  private long[] primitives;
+  /**
+   * The number of key-value pairs this marker contains.
+   */
+  private int size;
+  /**
+   * The callback to modify the message portion of a log line, if any.
    */
-  private final List<Marker> references = new ArrayList<>();
+  private volatile BiFunction<String, List<KeyValue>, String> messageCallback;
   /**
-   * The list of key-value pairs this marker contains which should be added to the LogFMT formatted
-   * log line.
+   * The callback to modify the error portion of a log line, if any.
    */
-  private final List<KeyValue> keyValues = new LinkedList<>();
+  private volatile BiFunction<String, List<KeyValue>, String> errorCallback;
   /**
-   * Any callbacks defined on this marker, i.e. to modify the message or error portions of a log
-   * line.
+   * The rendered key-value pairs of a frozen marker together with the masker and redactor they
+   * were rendered with.
    */
-  private final Map<ApplyCallbackFor, BiFunction<String, List<KeyValue>, String>> callbacks =
-          Collections.synchronizedMap(new EnumMap<>(ApplyCallbackFor.class));
+  private transient volatile Fragment fragment;
 
   private LogFmtMarker() {
     this.name = "LOGFMT";
+    this.frozen = false;
   }
 
   private LogFmtMarker(@NonNull final String name) {
     checkParam(name, "Invalid marker name");
     this.name = name;
+    this.frozen = false;
+  }
+
+  private LogFmtMarker(@NonNull final LogFmtMarker source) {
+    this.name = source.name;
+    this.frozen = true;
+    final List<String> frozenKeys = new ArrayList<>();
+    final List<Object> frozenValues = new ArrayList<>();
+    source.forEach((k, v) -> {
+      frozenKeys.add(k);
+      frozenValues.add(v);
+    });
+    this.keys = frozenKeys.toArray(new String[0]);
+    this.values = frozenValues.toArray();
+    this.size = keys.length;
+    // key-values of referenced LogFmtMarker objects were copied above, other markers are kept
+    // so that i.e. a CONFIDENTIAL marker can still be found
+    if (source.references != null) {
+      final List<Marker> others = new ArrayList<>();
+      for (final Marker reference : source.references) {
+        if (!(reference instanceof LogFmtMarker)) {
+          others.add(reference);
+        }
+      }
+      this.references = others.isEmpty() ? null : List.copyOf(others);
+    }
   }
 
   @Override
@@ -96,40 +176,52 @@ public final class LogFmtMarker implements Marker {
 
   @Override
   public void add(@NonNull final Marker reference) {
+    checkNotFrozen();
     checkParam(reference, "Attempted to add invalid marker reference");
+    if (references == null) {
+      references = new ArrayList<>(2);
+    }
     references.add(reference);
   }
 
   @Override
   public boolean remove(@NonNull final Marker reference) {
-    return references.remove(reference);
+    checkNotFrozen();
+    return references != null && references.remove(reference);
   }
 
   @Override
   @Deprecated
   public boolean hasChildren() {
-    return !references.isEmpty();
+    return hasReferences();
   }
 
   @Override
   public boolean hasReferences() {
-    return !references.isEmpty();
+    return references != null && !references.isEmpty();
   }
 
   @Override
   @NonNull
   public Iterator<Marker> iterator() {
-    return references.iterator();
+    return references != null ? references.iterator() : Collections.emptyIterator();
   }
 
   @Override
   public boolean contains(@NonNull final Marker other) {
-    return references.contains(other);
+    return references != null && references.contains(other);
   }
 
   @Override
   public boolean contains(@NonNull final String name) {
-    return references.stream().anyMatch(m -> m.getName().equals(name));
+    if (references != null) {
+      for (int i = 0; i < references.size(); i++) {
+        if (references.get(i).getName().equals(name)) {
+          return true;
+        }
+      }
+    }
+    return false;
   }
 
   /**
@@ -140,7 +232,20 @@ public final class LogFmtMarker implements Marker {
    * @since 1.0.3
    */
   public boolean hasCallbacks() {
-    return !callbacks.isEmpty();
+    return messageCallback != null || errorCallback != null;
+  }
+
+  /**
+   * Specifies whether a callback for the given target field was configured with the current marker
+   * or not.
+   *
+   * @param applyFor The target field to check for a callback
+   * @return <code>true</code> if a callback for the given field was configured with the current
+   *         marker; <code>false</code> otherwise
+   * @since 1.2.0
+   */
+  public boolean hasCallbackFor(@NonNull final ApplyCallbackFor applyFor) {
+    return (applyFor == ApplyCallbackFor.MESSAGE ? messageCallback : errorCallback) != null;
   }
 
   /**
@@ -158,9 +263,17 @@ public final class LogFmtMarker implements Marker {
   @NonNull
   public String applyCallbackFor(@NonNull final String valueToLog,
                                  @NonNull final ApplyCallbackFor applyFor) {
-    final BiFunction<String, List<KeyValue>, String> callback = callbacks.get(applyFor);
+    return applyCallbackFor(valueToLog, applyFor, null);
+  }
+
+  @NonNull
+  private String applyCallbackFor(@NonNull final String valueToLog,
+                                  @NonNull final ApplyCallbackFor applyFor,
+                                  @Nullable final ILoggingEvent event) {
+    final BiFunction<String, List<KeyValue>, String> callback =
+            applyFor == ApplyCallbackFor.MESSAGE ? messageCallback : errorCallback;
     if (callback != null) {
-      return callback.apply(valueToLog, keyValues);
+      return callback.apply(valueToLog, new KeyValueList(event));
     }
     return valueToLog;
   }
@@ -172,9 +285,17 @@ public final class LogFmtMarker implements Marker {
    */
   @NonNull
   public List<Map.Entry<String, Object>> getDefinedKeyValues() {
-    return keyValues.stream()
-            .map(kv -> new AbstractMap.SimpleEntry<>(kv.key, kv.value))
-            .collect(Collectors.toList());
+    return getDefinedKeyValues(null);
+  }
+
+  @NonNull
+  private List<Map.Entry<String, Object>> getDefinedKeyValues(
+          @Nullable final ILoggingEvent event) {
+    final List<Map.Entry<String, Object>> result = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      result.add(new AbstractMap.SimpleEntry<>(keys[i], value(i, event)));
+    }
+    return result;
   }
 
   @Override
@@ -190,31 +311,54 @@ public final class LogFmtMarker implements Marker {
       return false;
     }
     return name.equals(other.name)
-            && keyValues.equals(other.keyValues)
-            && references.equals(other.references);
+            && Arrays.equals(keys, 0, size, other.keys, 0, other.size)
+            && rawValuesEqual(other)
+            && referenceList().equals(other.referenceList());
   }
 
   @Override
   public int hashCode() {
+    int keyValuesHash = 1;
+    for (int i = 0; i < size; i++) {
+      keyValuesHash = 31 * keyValuesHash + 31 * keys[i].hashCode() + Objects.hashCode(rawValue(i));
+    }
     int result = 17;
     result = 31 * result + name.hashCode();
-    result = 31 * result + keyValues.hashCode();
-    result = 31 * result + references.hashCode();
+    result = 31 * result + keyValuesHash;
+    result = 31 * result + referenceList().hashCode();
     return result;
   }
 
   @Override
   public String toString() {
-    final String refs;
-    if (references.isEmpty()) {
-      refs = "";
-    } else {
-      refs = ", refs: " + references.stream().map(Marker::getName).collect(Collectors.joining());
+    final StringBuilder sb = new StringBuilder("LogFmt-Marker: ").append(name).append(" [keyVal: ");
+    for (int i = 0; i < size; i++) {
+      sb.append(keys[i]).append('=').append(value(i, null));
+    }
+    if (hasReferences()) {
+      sb.append(", refs: ");
+      for (final Marker reference : references) {
+        sb.append(reference.getName());
+      }
+    }
+    return sb.append(']').toString();
+  }
+
+  private boolean rawValuesEqual(@NonNull final LogFmtMarker other) {
+    if (size != other.size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (!Objects.equals(rawValue(i), other.rawValue(i))) {
+        return false;
+      }
     }
-    return "LogFmt-Marker: " + name + " [keyVal: "
-            + keyValues.stream().map(r -> r.key + "=" + r.value).collect(Collectors.joining())
-            + refs
-            + "]";
+    return true;
+  }
+
+  @NonNull
+  private List<Marker> referenceList() {
+    return references != null ? references : List.of();
   }
 
   /**
@@ -227,8 +371,196 @@ public final class LogFmtMarker implements Marker {
    */
   @NonNull
   public LogFmtMarker and(@NonNull final String key, @NonNull final Object value) {
+    checkNotFrozen();
+    if (!key.isEmpty()) {
+      insert(size, key, value);
+    }
+    return this;
+  }
+
+  /**
+   * Adds a new key-value entry to this marker whose value is computed by the given supplier only
+   * when the marker is written to a log line. The supplier is invoked at most once per formatted
+   * log event, on the first access to the value, and its result is kept for all further accesses
+   * while formatting that event, i.e. by callbacks, subsequent appenders or further appenders and
+   * layouts writing the same event, even if they run concurrently. Events that are filtered out
+   * before they are formatted therefore never compute the value. If the key is empty the key and
+   * supplier will be ignored and not added.
+   *
+   * <pre><code>
+   * log.debug(LogFmtMarker.with("orderId", orderId).and("payload", () -> payload.describe()),
+   *         "Order received");
+   * </code></pre>
+   *
+   * <p>A marker holding suppliers may be reused for several log statements, also by several
+   * threads, each of which computes the value anew. Accesses outside of formatting an event, i.e.
+   * via
+   * {@link #forEach(BiConsumer)}, invoke the supplier on every access. Freezing such a marker
+   * computes all values right away and keeps them.
+   *
+   * @param key      A String based key to add to the marker
+   * @param supplier The supplier computing the value for the provided key
+   * @return The LogFmt marker object
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker and(@NonNull final String key, @NonNull final Supplier<?> supplier) {
+    checkNotFrozen();
+    if (!key.isEmpty()) {
+      insert(size, key, new LazyValue(supplier));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a new key-value entry with a primitive <code>int</code> value to this marker. The value
+   * is neither boxed nor converted to a string, but written directly into the log line. Callbacks
+   * and {@link #forEach(BiConsumer)} see the value as {@link Integer}. If the key is empty the key
+   * and value will be ignored and not added.
+   *
+   * @param key   A String based key to add to the marker
+   * @param value The value for the provided key
+   * @return The LogFmt marker object
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker and(@NonNull final String key, final int value) {
+    checkNotFrozen();
+    if (!key.isEmpty()) {
+      insertPrimitive(key, Primitive.INT, value);
+    }
+    return this;
+  }
+
+  /**
+   * Adds a new key-value entry with a primitive <code>long</code> value to this marker. The value
+   * is neither boxed nor converted to a string, but written directly into the log line. If the key
+   * is empty the key and value will be ignored and not added.
+   *
+   * @param key   A String based key to add to the marker
+   * @param value The value for the provided key
+   * @return The LogFmt marker object
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker and(@NonNull final String key, final long value) {
+    checkNotFrozen();
+    if (!key.isEmpty()) {
+      insertPrimitive(key, Primitive.LONG, value);
+    }
+    return this;
+  }
+
+  /**
+   * Adds a new key-value entry with a primitive <code>double</code> value to this marker. The
+   * value is neither boxed nor converted to a string, but written directly into the log line. If
+   * the key is empty the key and value will be ignored and not added.
+   *
+   * @param key   A String based key to add to the marker
+   * @param value The value for the provided key
+   * @return The LogFmt marker object
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker and(@NonNull final String key, final double value) {
+    checkNotFrozen();
+    if (!key.isEmpty()) {
+      insertPrimitive(key, Primitive.DOUBLE, Double.doubleToRawLongBits(value));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a new key-value entry with a primitive <code>float</code> value to this marker. The
+   * value is neither boxed nor converted to a string, but written directly into the log line. If
+   * the key is empty the key and value will be ignored and not added.
+   *
+   * @param key   A String based key to add to the marker
+   * @param value The value for the provided key
+   * @return The LogFmt marker object
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker and(@NonNull final String key, final float value) {
+    checkNotFrozen();
+    if (!key.isEmpty()) {
+      insertPrimitive(key, Primitive.FLOAT, Float.floatToRawIntBits(value));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a new key-value entry with a <code>short</code> value to this marker, which is kept as
+   * {@link Short} rather than widened to another primitive type. If the key is empty the key and
+   * value will be ignored and not added.
+   *
+   * @param key   A String based key to add to the marker
+   * @param value The value for the provided key
+   * @return The LogFmt marker object
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker and(@NonNull final String key, final short value) {
+    checkNotFrozen();
+    if (!key.isEmpty()) {
+      insert(size, key, Short.valueOf(value));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a new key-value entry with a <code>byte</code> value to this marker, which is kept as
+   * {@link Byte} rather than widened to another primitive type. If the key is empty the key and
+   * value will be ignored and not added.
+   *
+   * @param key   A String based key to add to the marker
+   * @param value The value for the provided key
+   * @return The LogFmt marker object
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker and(@NonNull final String key, final byte value) {
+    checkNotFrozen();
+    if (!key.isEmpty()) {
+      insert(size, key, Byte.valueOf(value));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a new key-value entry with a <code>char</code> value to this marker, which is written as
+   * character rather than as number. If the key is empty the key and value will be ignored and
+   * not added.
+   *
+   * @param key   A String based key to add to the marker
+   * @param value The value for the provided key
+   * @return The LogFmt marker object
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker and(@NonNull final String key, final char value) {
+    checkNotFrozen();
+    if (!key.isEmpty()) {
+      insert(size, key, Character.valueOf(value));
+    }
+    return this;
+  }
+
+  /**
+   * Adds a new key-value entry with a primitive <code>boolean</code> value to this marker. The
+   * value is written directly into the log line without converting it to a string. If the key is
+   * empty the key and value will be ignored and not added.
+   *
+   * @param key   A String based key to add to the marker
+   * @param value The value for the provided key
+   * @return The LogFmt marker object
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker and(@NonNull final String key, final boolean value) {
+    checkNotFrozen();
     if (!key.isEmpty()) {
-      this.keyValues.add(new KeyValue(key, value));
+      insert(size, key, Boolean.valueOf(value));
     }
     return this;
   }
@@ -243,8 +575,9 @@ public final class LogFmtMarker implements Marker {
    */
   @NonNull
   public LogFmtMarker and(@NonNull final Object key, @NonNull final Object value) {
+    checkNotFrozen();
     if (!"".equals(key)) {
-      this.keyValues.add(new KeyValue(key.toString(), value));
+      insert(size, key.toString(), value);
     }
     return this;
   }
@@ -298,8 +631,11 @@ public final class LogFmtMarker implements Marker {
   public LogFmtMarker andCallback(
           @Nullable final ApplyCallbackFor applyFor,
           @NonNull final BiFunction<String, List<KeyValue>, String> callback) {
-    if (applyFor != null) {
-      this.callbacks.put(applyFor, callback);
+    checkNotFrozen();
+    if (applyFor == ApplyCallbackFor.MESSAGE) {
+      this.messageCallback = callback;
+    } else if (applyFor == ApplyCallbackFor.ERROR) {
+      this.errorCallback = callback;
     }
     return this;
   }
@@ -314,14 +650,207 @@ public final class LogFmtMarker implements Marker {
    * @param consumer The bi-consumer to act on the key-value pairs of this marker
    */
   public void forEach(@NonNull final BiConsumer<String, Object> consumer) {
-    if (hasReferences()) {
-      for (final Marker marker : references) {
-        if (marker instanceof LogFmtMarker base) {
+    if (references != null) {
+      for (int i = 0; i < references.size(); i++) {
+        if (references.get(i) instanceof LogFmtMarker base) {
           base.forEach(consumer);
         }
       }
     }
-    keyValues.forEach(keyValue -> consumer.accept(keyValue.key, keyValue.value));
+    for (int i = 0; i < size; i++) {
+      consumer.accept(keys[i], value(i, null));
+    }
+  }
+
+  /**
+   * Returns the value at the given index, computing the value of a lazy entry if necessary.
+   *
+   * @param index The index of the key-value pair
+   * @param event The event currently formatted, which the value of a lazy entry is computed once
+   *              for, or <code>null</code> if the value of a lazy entry should be computed anew
+   * @return The value of the key-value pair
+   */
+  @Nullable
+  private Object value(final int index, @Nullable final ILoggingEvent event) {
+    final Object value = rawValue(index);
+    return value instanceof LazyValue lazy ? lazy.get(event) : value;
+  }
+
+  /**
+   * Returns the value at the given index without computing the value of a lazy entry. Primitive
+   * values are boxed.
+   *
+   * @param index The index of the key-value pair
+   * @return The value of the key-value pair
+   */
+  @Nullable
+  private Object rawValue(final int index) {
+    final Object value = values[index];
+    if (value == Primitive.INT) {
+      return (int) primitives[index];
+    } else if (value == Primitive.LONG) {
+      return primitives[index];
+    } else if (value == Primitive.DOUBLE) {
+      return Double.longBitsToDouble(primitives[index]);
+    } else if (value == Primitive.FLOAT) {
+      return Float.intBitsToFloat((int) primitives[index]);
+    }
+    return value;
+  }
+
+  private void insertPrimitive(@NonNull final String key, @NonNull final Primitive type,
+                               final long bits) {
+    insert(size, key, type);
+    if (primitives == null) {
+      primitives = new long[keys.length];
+    }
+    primitives[size - 1] = bits;
+  }
+
+  private void insert(final int index, @NonNull final String key, @Nullable final Object value) {
+    if (size == keys.length) {
+      final int capacity = size + (size >> 1) + 1;
+      keys = Arrays.copyOf(keys, capacity);
+      values = Arrays.copyOf(values, capacity);
+      if (primitives != null) {
+        primitives = Arrays.copyOf(primitives, capacity);
+      }
+    }
+    if (index < size) {
+      System.arraycopy(keys, index, keys, index + 1, size - index);
+      System.arraycopy(values, index, values, index + 1, size - index);
+      if (primitives != null) {
+        System.arraycopy(primitives, index, primitives, index + 1, size - index);
+      }
+    }
+    keys[index] = key;
+    values[index] = value;
+    size++;
+  }
+
+  /**
+   * Creates an immutable copy of this marker, which holds the key-value pairs of this marker and
+   * of all referenced <em>LogFmtMarker</em> objects in the order {@link #forEach(BiConsumer)}
+   * provides them. References to other kinds of markers are kept.
+   *
+   * <p>A frozen marker is meant for key-value pairs that never change, like
+   * <code>component=billing</code>. {@link LogFmtLayout} renders, escapes and masks its key-value
+   * pairs only once and copies the rendered fragment verbatim into subsequent log lines, which
+   * also applies if the frozen marker is referenced by another marker. The fragment is rendered
+   * again if the masking or redaction configuration of the layout changes. Note that values are
+   * therefore converted to a string only once, hence values of mutable types will not reflect
+   * later changes.
+   *
+   * @return An immutable copy of this marker or this marker itself if it is frozen already
+   * @throws IllegalStateException If a callback was configured with this marker, as callbacks may
+   *                               modify the key-value pairs on each log statement
+   * @since 1.2.0
+   */
+  @NonNull
+  public LogFmtMarker freeze() {
+    if (frozen) {
+      return this;
+    }
+    if (hasCallbacks()) {
+      throw new IllegalStateException("Markers with callbacks can not be frozen");
+    }
+    return new LogFmtMarker(this);
+  }
+
+  /**
+   * Specifies whether this marker is immutable and its key-value pairs are rendered only once.
+   *
+   * @return <code>true</code> if this marker was created by {@link #freeze()} or
+   *         {@link #constant(String, Object)}; <code>false</code> otherwise
+   * @since 1.2.0
+   */
+  public boolean isFrozen() {
+    return frozen;
+  }
+
+  /**
+   * Appends the key-value pairs of all referenced <em>LogFmtMarker</em> objects followed by the
+   * ones of this marker to the provided {@link StringBuilder} object, skipping pairs that use a
+   * native key of the layout. Frozen markers append the fragment they rendered for the given
+   * masker and redactor before, if any, unless the duplicate key policy of the given set of
+   * emitted keys would drop or rename one of their keys.
+   *
+   * @param sb        The {@link StringBuilder} object to append the key-value pairs to
+   * @param keyMasker Optional masker that will obfuscate the values of matching keys
+   * @param redactor  Optional redactor that will replace text matching its rules within values
+   * @param emitted   Optional set of the keys already written to the log line, which the keys of
+   *                  this marker are claimed in
+   * @param event     The event currently formatted, if any
+   */
+  private void appendTo(@NonNull final StringBuilder sb,
+                        @Nullable final KeyMasker keyMasker,
+                        @Nullable final Redactor redactor,
+                        @Nullable final EmittedKeys emitted,
+                        @Nullable final ILoggingEvent event) {
+    if (frozen) {
+      Fragment cached = fragment;
+      if (cached == null || cached.keyMasker != keyMasker || cached.redactor != redactor) {
+        cached = render(keyMasker, redactor);
+        fragment = cached;
+      }
+      if (!cached.fragment.appendTo(sb, emitted)) {
+        appendKeyValues(sb, keyMasker, redactor, emitted, event);
+      }
+      return;
+    }
+
+    if (references != null) {
+      for (int i = 0; i < references.size(); i++) {
+        if (references.get(i) instanceof LogFmtMarker base) {
+          base.appendTo(sb, keyMasker, redactor, emitted, event);
+        }
+      }
+    }
+    appendKeyValues(sb, keyMasker, redactor, emitted, event);
+  }
+
+  private void appendKeyValues(@NonNull final StringBuilder sb,
+                               @Nullable final KeyMasker keyMasker,
+                               @Nullable final Redactor redactor,
+                               @Nullable final EmittedKeys emitted,
+                               @Nullable final ILoggingEvent event) {
+    for (int i = 0; i < size; i++) {
+      if (NativeKey.isNativeKey(keys[i])) {
+        continue;
+      }
+      if (values[i] == Primitive.INT || values[i] == Primitive.LONG) {
+        StringUtils.appendKeyValueAndEscape(
+                sb, keys[i], primitives[i], keyMasker, redactor, emitted);
+      } else if (values[i] == Primitive.DOUBLE) {
+        StringUtils.appendKeyValueAndEscape(sb, keys[i],
+                Double.longBitsToDouble(primitives[i]), keyMasker, redactor, emitted);
+      } else if (values[i] == Primitive.FLOAT) {
+        StringUtils.appendKeyValueAndEscape(sb, keys[i],
+                Float.intBitsToFloat((int) primitives[i]), keyMasker, redactor, emitted);
+      } else if (emitted != null) {
+        StringUtils.appendKeyValueAndEscape(
+                sb, keys[i], value(i, event), keyMasker, redactor, emitted);
+      } else {
+        StringUtils.appendKeyValueAndEscape(sb, keys[i], value(i, event), keyMasker, redactor);
+      }
+    }
+  }
+
+  @NonNull
+  private Fragment render(@Nullable final KeyMasker keyMasker, @Nullable final Redactor redactor) {
+    final KeyValueFragment.Builder builder = new KeyValueFragment.Builder();
+    for (int i = 0; i < size; i++) {
+      if (!NativeKey.isNativeKey(keys[i])) {
+        builder.add(keys[i], value(i, null), keyMasker, redactor);
+      }
+    }
+    return new Fragment(keyMasker, redactor, builder.build());
+  }
+
+  private void checkNotFrozen() {
+    if (frozen) {
+      throw new UnsupportedOperationException("Frozen marker " + name + " can not be modified");
+    }
   }
 
   private void checkParam(@Nullable final Object obj, @Nullable final String msg) {
@@ -340,6 +869,180 @@ public final class LogFmtMarker implements Marker {
 
   }
 
+  /**
+   * Tags the entries of the value array whose value is stored as primitive.
+   */
+  private enum Primitive {
+    INT,
+    LONG,
+    DOUBLE,
+    FLOAT
+  }
+
+  /**
+   * A value that is computed by a supplier at most once per formatted log event. Accesses outside
+   * of the formatting of an event compute the value anew.
+   */
+  private static final class LazyValue {
+
+    /**
+     * The supplier computing the value.
+     */
+    private final Supplier<?> supplier;
+    /**
+     * The values computed per formatted event or <code>null</code> if no event accessed the value
+     * yet. Events are held weakly, so values are dropped once their event was garbage collected.
+     * Logback events don't override <code>equals</code>, hence each event is a key of its own.
+     * Guarded by this object, which keeps the supplier from being invoked twice for the same event
+     * by concurrently formatting appenders.
+     */
+    private Map<ILoggingEvent, Object> computed;
+
+    LazyValue(@NonNull final Supplier<?> supplier) {
+      this.supplier = supplier;
+    }
+
+    @Nullable
+    Object get(@Nullable final ILoggingEvent event) {
+      if (event == null) {
+        return supplier.get();
+      }
+      synchronized (this) {
+        if (computed == null) {
+          computed = new WeakHashMap<>(4);
+        } else {
+          final Object value = computed.get(event);
+          if (value != null || computed.containsKey(event)) {
+            return value;
+          }
+        }
+        final Object value = supplier.get();
+        computed.put(event, value);
+        return value;
+      }
+    }
+  }
+
+  /**
+   * Gives the layout access to the private methods of this marker via {@link MarkerAccess}.
+   */
+  private static final class Access implements MarkerAccess.Accessor {
+
+    @Override
+    public void appendTo(@NonNull final LogFmtMarker marker, @NonNull final StringBuilder sb,
+                         @Nullable final KeyMasker keyMasker, @Nullable final Redactor redactor,
+                         @Nullable final EmittedKeys emitted,
+                         @Nullable final ILoggingEvent event) {
+      marker.appendTo(sb, keyMasker, redactor, emitted, event);
+    }
+
+    @Override
+    @NonNull
+    public String applyCallbackFor(@NonNull final LogFmtMarker marker,
+                                   @NonNull final String valueToLog,
+                                   @NonNull final ApplyCallbackFor applyFor,
+                                   @NonNull final ILoggingEvent event) {
+      return marker.applyCallbackFor(valueToLog, applyFor, event);
+    }
+
+    @Override
+    @NonNull
+    public List<Map.Entry<String, Object>> getDefinedKeyValues(
+            @NonNull final LogFmtMarker marker, @NonNull final ILoggingEvent event) {
+      return marker.getDefinedKeyValues(event);
+    }
+  }
+
+  /**
+   * The rendered key-value pairs of a frozen marker.
+   *
+   * @param keyMasker The masker the fragment was rendered with
+   * @param redactor  The redactor the fragment was rendered with
+   * @param fragment  The rendered key-value pairs
+   */
+  private record Fragment(@Nullable KeyMasker keyMasker, @Nullable Redactor redactor,
+                          @NonNull KeyValueFragment fragment) {
+  }
+
+  /**
+   * A view of the key-value pairs of this marker as list of {@link KeyValue} records, which is
+   * handed to callbacks. Records are only created when an element is retrieved and changes to the
+   * list are written through to the arrays of this marker.
+   */
+  private final class KeyValueList extends AbstractList<KeyValue> implements RandomAccess {
+
+    /**
+     * The event the callback is applied for, if any.
+     */
+    private final ILoggingEvent event;
+
+    KeyValueList(@Nullable final ILoggingEvent event) {
+      this.event = event;
+    }
+
+    @Override
+    @NonNull
+    public KeyValue get(final int index) {
+      Objects.checkIndex(index, size);
+      return new KeyValue(keys[index], value(index, event));
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+
+    @Override
+    @NonNull
+    public KeyValue set(final int index, @NonNull final KeyValue element) {
+      final KeyValue previous = get(index);
+      keys[index] = element.key();
+      values[index] = element.value();
+      return previous;
+    }
+
+    @Override
+    public void add(final int index, @NonNull final KeyValue element) {
+      Objects.checkIndex(index, size + 1);
+      insert(index, element.key(), element.value());
+      modCount++;
+    }
+
+    @Override
+    @NonNull
+    public KeyValue remove(final int index) {
+      final KeyValue previous = get(index);
+      System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+      System.arraycopy(values, index + 1, values, index, size - index - 1);
+      if (primitives != null) {
+        System.arraycopy(primitives, index + 1, primitives, index, size - index - 1);
+      }
+      size--;
+      keys[size] = null;
+      values[size] = null;
+      modCount++;
+      return previous;
+    }
+  }
+
+  /**
+   * Creates a new frozen marker instance using its default <em>LOGFMT</em> name that holds the
+   * given key and value as property. See {@link #freeze()} for details on frozen markers.
+   *
+   * <pre><code>
+   * private static final Marker BILLING = LogFmtMarker.constant("component", "billing");
+   * </code></pre>
+   *
+   * @param key   A String based key to add to this marker
+   * @param value The value belonging to the key
+   * @return The reference to the new, immutable marker instance
+   * @since 1.2.0
+   */
+  @NonNull
+  public static LogFmtMarker constant(@NonNull final String key, @NonNull final Object value) {
+    return new LogFmtMarker().and(key, value).freeze();
+  }
+
   /**
    * Creates a new marker instance using its default <em>LOGFMT</em> name and assigns a key and
    * value to it as property.
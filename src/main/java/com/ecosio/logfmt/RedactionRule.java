@@ -0,0 +1,148 @@
+package com.ecosio.logfmt;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+
+/**
+ * A user-defined rule that replaces any text matching a regular expression within the values of
+ * the <em>msg</em> and <em>error</em> fields, the MDC and {@link LogFmtMarker} key-value pairs.
+ *
+ * <p>Rules are usually specified within the logback XML configuration of the layout:
+ *
+ * <pre><code>
+ * &lt;layout class="com.ecosio.logfmt.LogFmtLayout"&gt;
+ *   &lt;redactionRule&gt;
+ *     &lt;name&gt;iban&lt;/name&gt;
+ *     &lt;pattern&gt;\b[A-Z]{2}\d{2}[A-Z0-9]{11,30}\b&lt;/pattern&gt;
+ *   &lt;/redactionRule&gt;
+ *   &lt;redactionRule&gt;
+ *     &lt;name&gt;email&lt;/name&gt;
+ *     &lt;pattern&gt;[\w.+-]+@[\w-]+(\.[\w-]+)+&lt;/pattern&gt;
+ *     &lt;replacement&gt;[email]&lt;/replacement&gt;
+ *   &lt;/redactionRule&gt;
+ * &lt;/layout&gt;</code></pre>
+ *
+ * <p>The pattern follows the syntax of {@link java.util.regex.Pattern}. As all rules are combined
+ * into a single regular expression, patterns must not use numbered back references. The
+ * replacement is inserted literally and defaults to <code>***</code>.
+ *
+ * <p>An optional <em>anchor</em>, a text every match of the pattern contains, i.e. <code>@</code>
+ * for e-mail addresses, allows values to be skipped without running the regular expression at
+ * all. For patterns starting with literal text, like <code>CUST-\d{6}</code>, that text is used as
+ * anchor automatically.
+ *
+ * @since 1.2.0
+ */
+public class RedactionRule {
+
+  /**
+   * The default replacement of matched text.
+   */
+  public static final String DEFAULT_REPLACEMENT = "***";
+
+  private String name;
+  private String pattern;
+  private String replacement = DEFAULT_REPLACEMENT;
+  private String anchor;
+
+  /**
+   * Creates a new rule that needs to be configured via its setters. This constructor is used by
+   * logback when the rule is specified within the XML configuration.
+   */
+  public RedactionRule() {
+
+  }
+
+  /**
+   * Creates a new rule that replaces text matching the given pattern with <code>***</code>.
+   *
+   * @param name    The name of the rule the hits are reported for
+   * @param pattern The regular expression matching the text to replace
+   */
+  public RedactionRule(@NonNull final String name, @NonNull final String pattern) {
+    this.name = name;
+    this.pattern = pattern;
+  }
+
+  /**
+   * Returns the name of the rule the hits are reported for.
+   *
+   * @return The name of the rule
+   */
+  @Nullable
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Specifies the name of the rule the hits are reported for.
+   *
+   * @param name The name of the rule
+   */
+  public void setName(@NonNull final String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the regular expression matching the text to replace.
+   *
+   * @return The regular expression of this rule
+   */
+  @Nullable
+  public String getPattern() {
+    return pattern;
+  }
+
+  /**
+   * Specifies the regular expression matching the text to replace.
+   *
+   * @param pattern The regular expression of this rule
+   */
+  public void setPattern(@NonNull final String pattern) {
+    this.pattern = pattern;
+  }
+
+  /**
+   * Returns the text matches of this rule are replaced with.
+   *
+   * @return The replacement of matched text
+   */
+  @NonNull
+  public String getReplacement() {
+    return replacement;
+  }
+
+  /**
+   * Specifies the text matches of this rule are replaced with. The text is inserted literally.
+   *
+   * @param replacement The replacement of matched text
+   */
+  public void setReplacement(@NonNull final String replacement) {
+    this.replacement = replacement;
+  }
+
+  /**
+   * Returns the text every match of the pattern contains, if it was specified explicitly.
+   *
+   * @return The anchor of this rule or <code>null</code> if none was specified
+   */
+  @Nullable
+  public String getAnchor() {
+    return anchor;
+  }
+
+  /**
+   * Specifies a text every match of the pattern contains. Values that contain neither the anchor
+   * of this nor of any other rule are not scanned by the regular expressions of the rules at all.
+   *
+   * @param anchor The anchor of this rule
+   */
+  public void setAnchor(@Nullable final String anchor) {
+    this.anchor = anchor;
+  }
+
+  @Override
+  public String toString() {
+    return "RedactionRule{name=" + name + ", pattern=" + pattern + "}";
+  }
+}
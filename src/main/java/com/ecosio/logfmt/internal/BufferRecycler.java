@@ -0,0 +1,222 @@
+package com.ecosio.logfmt.internal;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Hands out the character buffers used to generate log lines and takes them back once a log line
+ * was written, so that the buffers can be reused by subsequent events of the same thread.
+ *
+ * <p>Buffers are kept per platform thread. Virtual threads are usually short-lived and many of
+ * them share the same carrier thread, hence buffers are never retained for them and a fresh,
+ * properly sized buffer is handed out instead. A buffer that was acquired and not yet released
+ * is never handed out twice, which keeps log statements issued while a line is being formatted,
+ * i.e. from within the <code>toString()</code> method of a logged value, from corrupting the outer
+ * line.
+ *
+ * <p>Buffers that grew beyond the configured retention limit, i.e. due to a huge stacktrace, are
+ * not retained after use. New buffers are sized based on a running average of the lengths of the
+ * recently generated log lines.
+ */
+public final class BufferRecycler {
+
+  /**
+   * The default maximum number of characters a retained buffer may hold.
+   */
+  public static final int DEFAULT_MAX_RETAINED_SIZE = 64 * 1024;
+
+  /**
+   * The minimal capacity of newly created buffers.
+   */
+  private static final int MIN_CAPACITY = 256;
+
+  /**
+   * Handle to <code>Thread.isVirtual()</code> on runtimes that support virtual threads or
+   * <code>null</code> otherwise.
+   */
+  private static final MethodHandle IS_VIRTUAL = lookupIsVirtual();
+
+  /**
+   * The buffers retained per thread.
+   */
+  private final ThreadLocal<Slot> slots = ThreadLocal.withInitial(Slot::new);
+
+  /**
+   * The maximum number of characters a buffer may hold in order to be retained.
+   */
+  private volatile int maxRetainedSize = DEFAULT_MAX_RETAINED_SIZE;
+  /**
+   * Exponentially weighted running average of the lengths of recently generated log lines. Updates
+   * are intentionally not synchronized as a lost update only slightly skews the estimation.
+   */
+  private int averageLength = MIN_CAPACITY;
+
+  /**
+   * Specifies the maximum number of characters a buffer may hold in order to be retained
+   * for subsequent events.
+   *
+   * @param maxRetainedSize The maximum size of a buffer that is kept after use
+   */
+  public void setMaxRetainedSize(final int maxRetainedSize) {
+    if (maxRetainedSize < 0) {
+      throw new IllegalArgumentException("The maximum retained buffer size must not be negative");
+    }
+    this.maxRetainedSize = maxRetainedSize;
+  }
+
+  /**
+   * Returns the maximum number of characters a buffer may hold in order to be retained
+   * for subsequent events.
+   *
+   * @return The maximum size of a buffer that is kept after use
+   */
+  public int getMaxRetainedSize() {
+    return maxRetainedSize;
+  }
+
+  /**
+   * Returns the capacity new buffers are created with, which is based on the running average of
+   * the lengths of recently generated log lines.
+   *
+   * @return The capacity for newly created buffers
+   */
+  public int getSizeHint() {
+    final int average = averageLength;
+    return Math.max(MIN_CAPACITY, average + (average >> 2));
+  }
+
+  /**
+   * Records the length of a generated log line for sizing new buffers.
+   *
+   * @param length The number of characters of the generated log line
+   */
+  public void recordLength(final int length) {
+    final int average = averageLength;
+    averageLength = average + ((length - average) >> 4);
+  }
+
+  /**
+   * Creates a new {@link StringBuilder} object sized according to the lengths of the recently
+   * generated log lines. The returned object is not retained.
+   *
+   * @return A new, empty {@link StringBuilder} object
+   */
+  @NonNull
+  public StringBuilder newStringBuilder() {
+    return new StringBuilder(getSizeHint());
+  }
+
+  /**
+   * Returns an empty {@link StringBuilder} object owned by the caller until it is handed back via
+   * {@link #releaseStringBuilder(StringBuilder)}.
+   *
+   * @return An empty {@link StringBuilder} object
+   */
+  @NonNull
+  public StringBuilder acquireStringBuilder() {
+    if (isVirtualThread()) {
+      return newStringBuilder();
+    }
+    final Slot slot = slots.get();
+    final StringBuilder sb = slot.chars;
+    if (sb == null) {
+      return newStringBuilder();
+    }
+    slot.chars = null;
+    return sb;
+  }
+
+  /**
+   * Hands back a previously acquired {@link StringBuilder} object. The length of its content is
+   * recorded for sizing new buffers and the object is retained for reuse unless its capacity
+   * exceeds the retention limit.
+   *
+   * @param sb The {@link StringBuilder} object to hand back
+   */
+  public void releaseStringBuilder(@NonNull final StringBuilder sb) {
+    recordLength(sb.length());
+    if (sb.capacity() > maxRetainedSize || isVirtualThread()) {
+      return;
+    }
+    final Slot slot = slots.get();
+    if (slot.chars == null) {
+      sb.setLength(0);
+      slot.chars = sb;
+    }
+  }
+
+  /**
+   * Returns an empty set for recording the keys written to a log line, which is owned by the
+   * caller until it is handed back via {@link #releaseEmittedKeys(EmittedKeys)}.
+   *
+   * @return An empty set of emitted keys
+   */
+  @NonNull
+  public EmittedKeys acquireEmittedKeys() {
+    if (!isVirtualThread()) {
+      final Slot slot = slots.get();
+      final EmittedKeys keys = slot.keys;
+      if (keys != null) {
+        slot.keys = null;
+        return keys;
+      }
+    }
+    return new EmittedKeys();
+  }
+
+  /**
+   * Hands back a previously acquired set of emitted keys, which is reset and retained for reuse
+   * unless it grew too large.
+   *
+   * @param keys The set of emitted keys to hand back
+   */
+  public void releaseEmittedKeys(@NonNull final EmittedKeys keys) {
+    if (!keys.isRetainable() || isVirtualThread()) {
+      return;
+    }
+    final Slot slot = slots.get();
+    if (slot.keys == null) {
+      keys.reset();
+      slot.keys = keys;
+    }
+  }
+
+  /**
+   * Checks whether the current thread is a virtual thread.
+   *
+   * @return <code>true</code> if the current thread is a virtual thread; <code>false</code>
+   *         otherwise or if the runtime does not support virtual threads
+   */
+  public static boolean isVirtualThread() {
+    if (IS_VIRTUAL == null) {
+      return false;
+    }
+    try {
+      return (boolean) IS_VIRTUAL.invokeExact(Thread.currentThread());
+    } catch (final Throwable t) {
+      return false;
+    }
+  }
+
+  @Nullable
+  private static MethodHandle lookupIsVirtual() {
+    try {
+      return MethodHandles.publicLookup().findVirtual(
+              Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+    } catch (final NoSuchMethodException | IllegalAccessException e) {
+      return null;
+    }
+  }
+
+  /**
+   * The buffers retained for a single thread. A <code>null</code> field indicates that the
+   * buffer is currently in use or was not retained.
+   */
+  private static final class Slot {
+    private StringBuilder chars;
+    private EmittedKeys keys;
+  }
+}
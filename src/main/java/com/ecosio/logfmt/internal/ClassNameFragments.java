@@ -0,0 +1,94 @@
+package com.ecosio.logfmt.internal;
+
+import com.ecosio.logfmt.utils.StringUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The rendered <em>package</em> and <em>module</em> key-value pairs of a class name.
+ *
+ * <p>The key-value pairs are derived from the class name only once and are kept in a cache shared
+ * by all layouts of the JVM, so subsequent log lines of the same class just copy the rendered
+ * fragments instead of splitting and escaping the class name again. As the number of classes
+ * issuing log statements is usually limited, the cache is bounded and stops accepting new class
+ * names once it is full, after which fragments of unknown classes are rendered on each call.
+ *
+ * <p>Instances of this class are immutable and thread-safe.
+ */
+public final class ClassNameFragments {
+
+  /**
+   * The maximum number of class names whose fragments are cached.
+   */
+  private static final int MAX_CACHED_CLASSES = 4096;
+
+  /**
+   * The fragments of previously seen class names.
+   */
+  private static final Map<String, ClassNameFragments> CACHE = new ConcurrentHashMap<>();
+
+  /**
+   * The rendered <em>package</em> key-value pair, followed by a blank.
+   */
+  private final String packageFragment;
+  /**
+   * The rendered <em>module</em> key-value pair, followed by a blank.
+   */
+  private final String moduleFragment;
+
+  private ClassNameFragments(@NonNull final String className) {
+    final int lastPointPosition = className.lastIndexOf('.');
+    final String pkg = lastPointPosition >= 0 ? className.substring(0, lastPointPosition) : "";
+    final String module = lastPointPosition >= 0
+            ? className.substring(lastPointPosition + 1)
+            : className;
+
+    final StringBuilder sb = new StringBuilder(className.length() + 16);
+    StringUtils.appendKeyValueAndEscape(sb, NativeKey.PACKAGE.toString(), pkg);
+    this.packageFragment = sb.toString();
+    sb.setLength(0);
+    StringUtils.appendKeyValueAndEscape(sb, NativeKey.MODULE.toString(), module);
+    this.moduleFragment = sb.toString();
+  }
+
+  /**
+   * Returns the rendered fragments of the given fully qualified class name.
+   *
+   * @param className The fully qualified name of the class
+   * @return The rendered <em>package</em> and <em>module</em> key-value pairs of the class
+   */
+  @NonNull
+  public static ClassNameFragments of(@NonNull final String className) {
+    final ClassNameFragments cached = CACHE.get(className);
+    if (cached != null) {
+      return cached;
+    }
+    final ClassNameFragments fragments = new ClassNameFragments(className);
+    if (CACHE.size() < MAX_CACHED_CLASSES) {
+      CACHE.putIfAbsent(className, fragments);
+    }
+    return fragments;
+  }
+
+  /**
+   * Returns the rendered <em>package</em> key-value pair, i.e.
+   * <code>package=com.ecosio.logfmt </code>.
+   *
+   * @return The rendered package key-value pair, followed by a blank
+   */
+  @NonNull
+  public String getPackageFragment() {
+    return packageFragment;
+  }
+
+  /**
+   * Returns the rendered <em>module</em> key-value pair, i.e. <code>module=LogFmtLayout </code>.
+   *
+   * @return The rendered module key-value pair, followed by a blank
+   */
+  @NonNull
+  public String getModuleFragment() {
+    return moduleFragment;
+  }
+}
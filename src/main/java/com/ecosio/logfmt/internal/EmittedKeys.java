@@ -0,0 +1,318 @@
+package com.ecosio.logfmt.internal;
+
+import com.ecosio.logfmt.DuplicateKeyPolicy;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.Arrays;
+
+/**
+ * The set of keys already written to the log line of the event that is currently formatted.
+ *
+ * <p>The keys are kept in an open addressing hash table with linear probing. Each slot is stamped
+ * with the generation of the event it was written for, so {@link #reset()} only needs to advance
+ * the generation instead of clearing the table, which allows a single instance to be reused for
+ * subsequent events of the same thread.
+ *
+ * <p>Keys claimed via {@link #claim(String, int)} are subject to the configured
+ * {@link DuplicateKeyPolicy}. For {@link DuplicateKeyPolicy#LAST_WINS} the position of each
+ * key-value pair within the log line is recorded as well, so that preceding occurrences of a key
+ * can be removed by {@link #removeDropped(StringBuilder)} once the whole line was written.
+ *
+ * <p>Instances of this class are not thread-safe.
+ */
+public final class EmittedKeys {
+
+  /**
+   * The number of slots of a new table, which needs to be a power of two.
+   */
+  private static final int INITIAL_CAPACITY = 32;
+  /**
+   * The maximum number of slots of a table that is retained for subsequent events.
+   */
+  private static final int MAX_RETAINED_CAPACITY = 1024;
+
+  /**
+   * The keys of the slots. A key is only valid if the stamp of its slot matches the current
+   * generation.
+   */
+  private String[] table = new String[INITIAL_CAPACITY];
+  /**
+   * The generation each slot was written in.
+   */
+  private int[] stamps = new int[INITIAL_CAPACITY];
+  /**
+   * The position within the log line the key-value pair of each slot starts at or
+   * <code>-1</code> if the key was recorded without a position.
+   */
+  private int[] starts = new int[INITIAL_CAPACITY];
+  /**
+   * The position within the log line right after the key-value pair of each slot.
+   */
+  private int[] ends = new int[INITIAL_CAPACITY];
+  /**
+   * The start and end positions of the key-value pairs that need to be removed from the log line.
+   */
+  private int[] dropped = new int[4];
+  /**
+   * The number of positions stored in {@link #dropped}.
+   */
+  private int droppedCount;
+  /**
+   * The slot of the most recently claimed key or <code>-1</code> if the key was not recorded.
+   */
+  private int lastSlot = -1;
+  /**
+   * The generation of the current event.
+   */
+  private int generation = 1;
+  /**
+   * The number of keys recorded for the current event.
+   */
+  private int size;
+  /**
+   * The policy to apply to keys that are claimed more than once.
+   */
+  private DuplicateKeyPolicy policy = DuplicateKeyPolicy.KEEP_ALL;
+
+  /**
+   * Specifies the policy to apply to keys that are claimed more than once.
+   *
+   * @param policy The duplicate key policy to apply
+   */
+  public void setPolicy(@NonNull final DuplicateKeyPolicy policy) {
+    this.policy = policy;
+  }
+
+  /**
+   * Records the given key as written to the log line, regardless of the duplicate key policy.
+   *
+   * @param key The key that is written to the log line
+   * @return <code>true</code> if the key was not written to the log line before;
+   *         <code>false</code> if it was already recorded for the current event
+   */
+  public boolean add(@NonNull final String key) {
+    final int idx = probe(key);
+    if (idx >= 0) {
+      return false;
+    }
+    insert(-idx - 1, key, -1);
+    return true;
+  }
+
+  /**
+   * Checks whether the given key was already written to the log line of the current event.
+   *
+   * @param key The key to check
+   * @return <code>true</code> if the key was recorded for the current event; <code>false</code>
+   *         otherwise
+   */
+  public boolean contains(@NonNull final String key) {
+    final int mask = table.length - 1;
+    int idx = spread(key.hashCode()) & mask;
+    while (stamps[idx] == generation) {
+      final String existing = table[idx];
+      if (existing == key || existing.equals(key)) {
+        return true;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Specifies whether the duplicate key policy writes every occurrence of a key unchanged.
+   *
+   * @return <code>true</code> for {@link DuplicateKeyPolicy#KEEP_ALL} and
+   *         {@link DuplicateKeyPolicy#LAST_WINS}; <code>false</code> if subsequent occurrences of
+   *         a key are dropped or renamed
+   */
+  public boolean acceptsDuplicates() {
+    return policy == DuplicateKeyPolicy.KEEP_ALL || policy == DuplicateKeyPolicy.LAST_WINS;
+  }
+
+  /**
+   * Claims the given key for a key-value pair that is about to be written to the log line at the
+   * given position. The end of the key-value pair needs to be reported via {@link #commit(int)}
+   * once it was written.
+   *
+   * @param key   The key of the key-value pair to write
+   * @param start The position within the log line the key-value pair will start at
+   * @return The key to write, which is the given key or a renamed one for
+   *         {@link DuplicateKeyPolicy#SUFFIX_RENAME}; <code>null</code> if the key-value pair
+   *         should not be written at all
+   */
+  @Nullable
+  public String claim(@NonNull final String key, final int start) {
+    final int idx = probe(key);
+    if (idx < 0) {
+      insert(-idx - 1, key, start);
+      return key;
+    }
+    lastSlot = -1;
+    return switch (policy) {
+      case FIRST_WINS -> null;
+      case LAST_WINS -> supersede(idx, key, start);
+      case SUFFIX_RENAME -> rename(key, start);
+      case KEEP_ALL -> key;
+    };
+  }
+
+  /**
+   * Records the end of the key-value pair of the most recently claimed key.
+   *
+   * @param end The position within the log line right after the written key-value pair
+   */
+  public void commit(final int end) {
+    if (lastSlot >= 0) {
+      ends[lastSlot] = end;
+      lastSlot = -1;
+    }
+  }
+
+  /**
+   * Removes the key-value pairs that were superseded by a subsequent occurrence of their key from
+   * the given log line. This is a no-op unless {@link DuplicateKeyPolicy#LAST_WINS} is applied
+   * and a key was actually claimed more than once.
+   *
+   * @param sb The log line the claimed keys were written to
+   */
+  public void removeDropped(@NonNull final StringBuilder sb) {
+    if (droppedCount == 0) {
+      return;
+    }
+    // sort the ranges by their start position, there are only a few of them
+    for (int i = 2; i < droppedCount; i += 2) {
+      final int start = dropped[i];
+      final int end = dropped[i + 1];
+      int j = i - 2;
+      while (j >= 0 && dropped[j] > start) {
+        dropped[j + 2] = dropped[j];
+        dropped[j + 3] = dropped[j + 1];
+        j -= 2;
+      }
+      dropped[j + 2] = start;
+      dropped[j + 3] = end;
+    }
+    // remove from the back so that the positions of the remaining ranges stay valid
+    for (int i = droppedCount - 2; i >= 0; i -= 2) {
+      sb.delete(dropped[i], dropped[i + 1]);
+    }
+    droppedCount = 0;
+  }
+
+  /**
+   * Forgets all keys recorded so far, so that this set can be used for the next event.
+   */
+  public void reset() {
+    size = 0;
+    droppedCount = 0;
+    lastSlot = -1;
+    if (++generation == 0) {
+      Arrays.fill(stamps, 0);
+      Arrays.fill(table, null);
+      generation = 1;
+    }
+  }
+
+  /**
+   * Specifies whether this set is small enough to be retained for subsequent events.
+   *
+   * @return <code>true</code> if this set should be reused; <code>false</code> if it grew too
+   *         large due to an event with an exceptional number of keys
+   */
+  public boolean isRetainable() {
+    return table.length <= MAX_RETAINED_CAPACITY;
+  }
+
+  /**
+   * Looks up the slot of the given key, growing the table beforehand if necessary.
+   *
+   * @param key The key to look up
+   * @return The slot of the key if it was recorded for the current event; otherwise
+   *         <code>-(slot + 1)</code> of the free slot the key would be inserted at
+   */
+  private int probe(@NonNull final String key) {
+    if (size >= table.length >> 1) {
+      grow();
+    }
+    final int mask = table.length - 1;
+    int idx = spread(key.hashCode()) & mask;
+    while (stamps[idx] == generation) {
+      final String existing = table[idx];
+      if (existing == key || existing.equals(key)) {
+        return idx;
+      }
+      idx = (idx + 1) & mask;
+    }
+    return -idx - 1;
+  }
+
+  private void insert(final int idx, @NonNull final String key, final int start) {
+    table[idx] = key;
+    stamps[idx] = generation;
+    starts[idx] = start;
+    ends[idx] = start;
+    lastSlot = start >= 0 ? idx : -1;
+    size++;
+  }
+
+  @NonNull
+  private String supersede(final int idx, @NonNull final String key, final int start) {
+    drop(starts[idx], ends[idx]);
+    starts[idx] = start;
+    ends[idx] = start;
+    lastSlot = idx;
+    return key;
+  }
+
+  @NonNull
+  private String rename(@NonNull final String key, final int start) {
+    for (int n = 2; ; n++) {
+      final String renamed = key + '_' + n;
+      final int idx = probe(renamed);
+      if (idx < 0) {
+        insert(-idx - 1, renamed, start);
+        return renamed;
+      }
+    }
+  }
+
+  private void drop(final int start, final int end) {
+    if (start < 0 || end <= start) {
+      return;
+    }
+    if (droppedCount == dropped.length) {
+      dropped = Arrays.copyOf(dropped, dropped.length << 1);
+    }
+    dropped[droppedCount++] = start;
+    dropped[droppedCount++] = end;
+  }
+
+  private void grow() {
+    final String[] oldTable = table;
+    final int[] oldStamps = stamps;
+    final int[] oldStarts = starts;
+    final int[] oldEnds = ends;
+    table = new String[oldTable.length << 1];
+    stamps = new int[oldTable.length << 1];
+    starts = new int[oldTable.length << 1];
+    ends = new int[oldTable.length << 1];
+    final int mask = table.length - 1;
+    for (int i = 0; i < oldTable.length; i++) {
+      if (oldStamps[i] == generation) {
+        int idx = spread(oldTable[i].hashCode()) & mask;
+        while (stamps[idx] == generation) {
+          idx = (idx + 1) & mask;
+        }
+        table[idx] = oldTable[i];
+        stamps[idx] = generation;
+        starts[idx] = oldStarts[i];
+        ends[idx] = oldEnds[i];
+      }
+    }
+  }
+
+  private static int spread(final int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
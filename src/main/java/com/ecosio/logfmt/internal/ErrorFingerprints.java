@@ -0,0 +1,160 @@
+package com.ecosio.logfmt.internal;
+
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the occurrences of recurring exceptions per time window, which allows to write the full
+ * stack trace of an exception only once per window.
+ *
+ * <p>Exceptions are identified by a fingerprint over the class names of the logged throwable and
+ * its causes as well as over the top frames of each of them. Messages are not part of the
+ * fingerprint, as they often contain identifiers that change with every occurrence. The
+ * fingerprint only depends on the hash codes of strings and is therefore stable across restarts.
+ *
+ * <p>The windows of the most recent fingerprints are kept in a bounded concurrent map and counted
+ * with atomic operations, so that a burst of identical errors does not contend on a lock. Once the
+ * map is full, expired windows are evicted by a single thread. Exceptions that can't be tracked
+ * as the map is still full are treated like first occurrences.
+ *
+ * <p>Instances of this class are thread-safe.
+ */
+public final class ErrorFingerprints {
+
+  /**
+   * The maximum number of fingerprints whose windows are tracked.
+   */
+  private static final int MAX_TRACKED_FINGERPRINTS = 1024;
+  /**
+   * The number of top frames per throwable that are part of the fingerprint.
+   */
+  private static final int FINGERPRINT_FRAMES = 8;
+  /**
+   * The maximum number of nested causes that are part of the fingerprint.
+   */
+  private static final int FINGERPRINT_CAUSES = 16;
+
+  /**
+   * The length of a window in milliseconds.
+   */
+  private final long windowMillis;
+  /**
+   * The current window of each tracked fingerprint.
+   */
+  private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+  /**
+   * Whether a thread is currently evicting expired windows.
+   */
+  private final AtomicBoolean evicting = new AtomicBoolean();
+
+  /**
+   * Creates a new instance tracking exceptions within windows of the given length.
+   *
+   * @param windowMillis The length of a window in milliseconds
+   */
+  public ErrorFingerprints(final long windowMillis) {
+    this.windowMillis = windowMillis;
+  }
+
+  /**
+   * Computes the fingerprint of the given throwable proxy.
+   *
+   * @param tp The throwable proxy to compute the fingerprint of
+   * @return The fingerprint of the throwable
+   */
+  public static long fingerprint(@NonNull final IThrowableProxy tp) {
+    long hash = 0xcbf29ce484222325L;
+    IThrowableProxy current = tp;
+    for (int depth = 0; current != null && depth < FINGERPRINT_CAUSES; depth++) {
+      hash = mix(hash, current.getClassName().hashCode());
+      final StackTraceElementProxy[] frames = current.getStackTraceElementProxyArray();
+      for (int i = 0; i < frames.length && i < FINGERPRINT_FRAMES; i++) {
+        final StackTraceElement frame = frames[i].getStackTraceElement();
+        hash = mix(hash, frame.getClassName().hashCode());
+        hash = mix(hash, frame.getMethodName().hashCode());
+        hash = mix(hash, frame.getLineNumber());
+      }
+      current = current.getCause();
+    }
+    // finalizer of MurmurHash3 to spread the bits of the accumulated hash
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    return hash ^ (hash >>> 33);
+  }
+
+  private static long mix(final long hash, final int value) {
+    return (hash ^ value) * 0x100000001b3L;
+  }
+
+  /**
+   * Formats the given fingerprint as 16 digit hexadecimal number.
+   *
+   * @param fingerprint The fingerprint to format
+   * @return The hexadecimal representation of the fingerprint
+   */
+  @NonNull
+  public static String format(final long fingerprint) {
+    final String hex = Long.toHexString(fingerprint);
+    return "0".repeat(16 - hex.length()) + hex;
+  }
+
+  /**
+   * Records an occurrence of the exception with the given fingerprint.
+   *
+   * @param fingerprint The fingerprint of the exception
+   * @param timestamp   The time of the occurrence in milliseconds since the epoch
+   * @return The number of occurrences of the exception within the current window, which is
+   *         <code>1</code> for the first occurrence of a window
+   */
+  public int record(final long fingerprint, final long timestamp) {
+    final Long key = fingerprint;
+    while (true) {
+      final Window window = windows.get(key);
+      if (window == null) {
+        if (windows.size() >= MAX_TRACKED_FINGERPRINTS && !evictExpired(timestamp)) {
+          return 1;
+        }
+        if (windows.putIfAbsent(key, new Window(timestamp)) == null) {
+          return 1;
+        }
+      } else if (timestamp - window.start >= windowMillis) {
+        if (windows.replace(key, window, new Window(timestamp))) {
+          return 1;
+        }
+      } else {
+        return window.count.incrementAndGet();
+      }
+    }
+  }
+
+  private boolean evictExpired(final long timestamp) {
+    if (evicting.compareAndSet(false, true)) {
+      try {
+        windows.values().removeIf(window -> timestamp - window.start >= windowMillis);
+      } finally {
+        evicting.set(false);
+      }
+    }
+    return windows.size() < MAX_TRACKED_FINGERPRINTS;
+  }
+
+  /**
+   * The occurrences of an exception within a window.
+   */
+  private static final class Window {
+
+    private final long start;
+    private final AtomicInteger count = new AtomicInteger(1);
+
+    Window(final long start) {
+      this.start = start;
+    }
+  }
+}
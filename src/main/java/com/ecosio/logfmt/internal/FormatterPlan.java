@@ -0,0 +1,216 @@
+package com.ecosio.logfmt.internal;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.DuplicateKeyPolicy;
+import com.ecosio.logfmt.internal.appender.KeyValueAppender;
+import com.ecosio.logfmt.utils.StringUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An immutable, precompiled representation of the layout configuration that is used to generate
+ * a log line for an event.
+ *
+ * <p>A plan is compiled once from the current {@link State} and resolves everything that does not
+ * depend on the actual event upfront. The constant <em>prefix</em> and <em>app</em> key-value
+ * pairs are rendered into a single header fragment, the configured appender are stored in a plain
+ * array in the order they should be executed and the relative position of the <em>custom</em>
+ * appender to the <em>msg</em> and <em>error</em> appender is resolved, so that no list lookups
+ * are necessary while an event is formatted. The <code>key=</code> token of each native key is
+ * rendered once as well. The executing plan is handed to each appender, so appender don't need
+ * to look up the current plan of the layout again.
+ *
+ * <p>All keys written to a log line are claimed in a per-event {@link EmittedKeys} set, which
+ * enforces the configured {@link DuplicateKeyPolicy}.
+ */
+public final class FormatterPlan {
+
+  /**
+   * The pre-rendered <em>prefix</em> and <em>app</em> key-value pairs or <code>null</code> if
+   * neither was configured.
+   */
+  private final String header;
+  /**
+   * The appender to execute in the order their key-value pairs should appear in the log line.
+   */
+  private final KeyValueAppender[] appender;
+  /**
+   * Whether the custom fields appender is executed before the appender of the native key with
+   * the respective ordinal or is not configured at all.
+   */
+  private final boolean[] customAppendedBefore;
+  /**
+   * The rendered <code>key=</code> token of the native key with the respective ordinal.
+   */
+  private final String[] keyTokens;
+  /**
+   * The keys of the pre-rendered header.
+   */
+  private final String[] headerKeys;
+  /**
+   * The position within the header right after the key-value pair of each header key.
+   */
+  private final int[] headerEnds;
+  /**
+   * The policy to apply to keys that are written to the same log line more than once.
+   */
+  private final DuplicateKeyPolicy duplicateKeyPolicy;
+  /**
+   * Whether the package or module appender is configured, which need the issuing class of an
+   * event.
+   */
+  private final boolean classNameRequired;
+  /**
+   * Hands out the sets recording the keys written to a log line.
+   */
+  private final BufferRecycler recycler;
+
+  private FormatterPlan(@Nullable final String header,
+                        @NonNull final String[] headerKeys,
+                        @NonNull final int[] headerEnds,
+                        @NonNull final KeyValueAppender[] appender,
+                        @NonNull final boolean[] customAppendedBefore,
+                        @NonNull final DuplicateKeyPolicy duplicateKeyPolicy,
+                        final boolean classNameRequired,
+                        @NonNull final BufferRecycler recycler) {
+    this.classNameRequired = classNameRequired;
+    this.header = header;
+    this.headerKeys = headerKeys;
+    this.headerEnds = headerEnds;
+    this.duplicateKeyPolicy = duplicateKeyPolicy;
+    this.appender = appender;
+    this.customAppendedBefore = customAppendedBefore;
+    this.recycler = recycler;
+    final NativeKey[] nativeKeys = NativeKey.values();
+    this.keyTokens = new String[nativeKeys.length];
+    for (final NativeKey key : nativeKeys) {
+      keyTokens[key.ordinal()] = key + "=";
+    }
+  }
+
+  /**
+   * Compiles the current configuration of the given state into a new plan.
+   *
+   * @param state The state holding the layout configuration to compile
+   * @return The compiled plan
+   */
+  @NonNull
+  public static FormatterPlan compile(@NonNull final State state) {
+    final StringBuilder header = new StringBuilder();
+    final List<String> headerKeys = new ArrayList<>(2);
+    final int[] headerEnds = new int[2];
+    if (state.getPrefix() != null) {
+      header.append("prefix=").append(state.getPrefix()).append(' ');
+      headerEnds[headerKeys.size()] = header.length();
+      headerKeys.add("prefix");
+    }
+    if (state.getAppName() != null) {
+      StringUtils.appendKeyValueAndEscape(header, NativeKey.APP.toString(), state.getAppName());
+      headerEnds[headerKeys.size()] = header.length();
+      headerKeys.add(NativeKey.APP.toString());
+    }
+
+    final List<KeyValueAppender> appender = state.getAppender();
+    final int customIdx = indexOf(appender, state.getPredefinedAppender("custom"));
+    final NativeKey[] keys = NativeKey.values();
+    final boolean[] customAppendedBefore = new boolean[keys.length];
+    for (final NativeKey key : keys) {
+      final int idx = indexOf(appender, state.getPredefinedAppender(key.toString()));
+      // custom appender will automatically add any custom specified key/value pairs. Appender
+      // executed after the custom appender, or if no custom appender was configured at all, need
+      // to take care of key/values added by callbacks on their own
+      customAppendedBefore[key.ordinal()] = customIdx < idx;
+    }
+
+    return new FormatterPlan(
+            header.length() > 0 ? header.toString() : null,
+            headerKeys.toArray(new String[0]),
+            Arrays.copyOf(headerEnds, headerKeys.size()),
+            appender.toArray(new KeyValueAppender[0]),
+            customAppendedBefore,
+            state.getDuplicateKeyPolicy(),
+            indexOf(appender, state.getPredefinedAppender("package")) >= 0
+                    || indexOf(appender, state.getPredefinedAppender("module")) >= 0,
+            state.getBufferRecycler());
+  }
+
+  private static int indexOf(@NonNull final List<KeyValueAppender> appender,
+                             @Nullable final KeyValueAppender keyValueAppender) {
+    return keyValueAppender != null ? appender.indexOf(keyValueAppender) : -1;
+  }
+
+  /**
+   * Generates the log line for the given event and appends it including the trailing line break
+   * to the provided {@link StringBuilder} object. The keys written by the appender are claimed
+   * in a set that is shared by all appender for this event. Key-value pairs superseded by a
+   * subsequent occurrence of their key are removed once all appender were executed.
+   *
+   * @param sb    The {@link StringBuilder} object to append the log line to
+   * @param event The event to generate the log line for
+   */
+  public void format(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
+    final int start = sb.length();
+    final EmittedKeys keys = recycler.acquireEmittedKeys();
+    try {
+      keys.setPolicy(duplicateKeyPolicy);
+      if (header != null) {
+        sb.append(header);
+        for (int i = 0; i < headerKeys.length; i++) {
+          keys.claim(headerKeys[i], start + (i > 0 ? headerEnds[i - 1] : 0));
+          keys.commit(start + headerEnds[i]);
+        }
+      }
+      for (final KeyValueAppender keyValueAppender : appender) {
+        keyValueAppender.append(sb, keys, event, this);
+      }
+      keys.removeDropped(sb);
+    } finally {
+      recycler.releaseEmittedKeys(keys);
+    }
+    if (sb.length() > start) {
+      sb.setCharAt(sb.length() - 1, '\n');
+    } else {
+      sb.append('\n');
+    }
+  }
+
+  /**
+   * Specifies whether the custom fields appender is executed before the appender of the given
+   * native key, or is not configured at all. In both cases the appender of the given key needs to
+   * add key-value pairs added by callbacks to the log line itself.
+   *
+   * @param key The native key of the appender to check
+   * @return <code>true</code> if custom key-value pairs were already appended before the appender
+   *         of the given key runs or will not be appended at all; <code>false</code> if the custom
+   *         fields appender will run after the appender of the given key
+   */
+  public boolean isCustomAppendedBefore(@NonNull final NativeKey key) {
+    return customAppendedBefore[key.ordinal()];
+  }
+
+  /**
+   * Returns the rendered <code>key=</code> token of the given native key, which appender write
+   * right before the value of their key-value pair.
+   *
+   * @param key The native key to return the token for
+   * @return The key followed by an equals sign, i.e. <code>msg=</code>
+   */
+  @NonNull
+  public String keyToken(@NonNull final NativeKey key) {
+    return keyTokens[key.ordinal()];
+  }
+
+  /**
+   * Specifies whether the <em>package</em> or <em>module</em> field is configured, which both
+   * need to know the class that issued an event.
+   *
+   * @return <code>true</code> if the issuing class of events is written to the log line;
+   *         <code>false</code> otherwise
+   */
+  public boolean isClassNameRequired() {
+    return classNameRequired;
+  }
+}
@@ -0,0 +1,139 @@
+package com.ecosio.logfmt.internal;
+
+import com.ecosio.logfmt.utils.KeyMasker;
+import com.ecosio.logfmt.utils.Redactor;
+import com.ecosio.logfmt.utils.StringUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.Arrays;
+
+/**
+ * A sequence of escaped and masked key-value pairs that was rendered once and can be copied
+ * verbatim into subsequent log lines, i.e. the key-value pairs of a frozen marker or of an MDC map.
+ *
+ * <p>Besides the rendered text a fragment remembers the keys it contains and where each key-value
+ * pair ends, so that the keys can be claimed in the {@link EmittedKeys} of the log line it is
+ * copied into.
+ */
+public final class KeyValueFragment {
+
+  /**
+   * The rendered key-value pairs, each followed by a blank.
+   */
+  private final String text;
+  /**
+   * The keys of the rendered key-value pairs in the order they were rendered.
+   */
+  private final String[] keys;
+  /**
+   * The position within the text right after each rendered key-value pair.
+   */
+  private final int[] ends;
+  /**
+   * Whether each key occurs only once within the fragment.
+   */
+  private final boolean distinct;
+
+  private KeyValueFragment(@NonNull final String text,
+                           @NonNull final String[] keys,
+                           @NonNull final int[] ends) {
+    this.text = text;
+    this.keys = keys;
+    this.ends = ends;
+    final EmittedKeys seen = new EmittedKeys();
+    boolean unique = true;
+    for (final String key : keys) {
+      unique &= seen.add(key);
+    }
+    this.distinct = unique;
+  }
+
+  /**
+   * Appends this fragment to the given log line and claims its keys in the given set of emitted
+   * keys. Nothing is appended if the duplicate key policy of that set would drop or rename one of
+   * the keys of this fragment, in which case the caller needs to append the key-value pairs one
+   * by one.
+   *
+   * @param sb      The {@link StringBuilder} object to append the fragment to
+   * @param emitted Optional set of the keys already written to the log line
+   * @return <code>true</code> if the fragment was appended; <code>false</code> otherwise
+   */
+  public boolean appendTo(@NonNull final StringBuilder sb, @Nullable final EmittedKeys emitted) {
+    if (emitted == null) {
+      sb.append(text);
+      return true;
+    }
+    if (!emitted.acceptsDuplicates()) {
+      if (!distinct) {
+        return false;
+      }
+      for (final String key : keys) {
+        if (emitted.contains(key)) {
+          return false;
+        }
+      }
+    }
+    final int start = sb.length();
+    sb.append(text);
+    for (int i = 0; i < keys.length; i++) {
+      emitted.claim(keys[i], start + (i > 0 ? ends[i - 1] : 0));
+      emitted.commit(start + ends[i]);
+    }
+    return true;
+  }
+
+  /**
+   * Renders key-value pairs into a new {@link KeyValueFragment}.
+   *
+   * <p>Instances of this class are not thread-safe.
+   */
+  public static final class Builder {
+
+    private final StringBuilder text = new StringBuilder();
+    private String[] keys = new String[4];
+    private int[] ends = new int[4];
+    private int size;
+
+    /**
+     * Renders the given key-value pair like
+     * {@link StringUtils#appendKeyValueAndEscape(StringBuilder, String, Object, KeyMasker,
+     * Redactor)} does. Pairs with a <code>null</code> or empty key are ignored.
+     *
+     * @param key       The key of the key-value pair
+     * @param value     The value of the key-value pair
+     * @param keyMasker Optional masker that will obfuscate the value if it matches the key
+     * @param redactor  Optional redactor that will replace text matching its rules within the
+     *                  value
+     * @return This builder
+     */
+    @NonNull
+    public Builder add(@Nullable final String key,
+                       @Nullable final Object value,
+                       @Nullable final KeyMasker keyMasker,
+                       @Nullable final Redactor redactor) {
+      if (key == null || key.isEmpty()) {
+        return this;
+      }
+      StringUtils.appendKeyValueAndEscape(text, key, value, keyMasker, redactor);
+      if (size == keys.length) {
+        keys = Arrays.copyOf(keys, size << 1);
+        ends = Arrays.copyOf(ends, size << 1);
+      }
+      keys[size] = key;
+      ends[size] = text.length();
+      size++;
+      return this;
+    }
+
+    /**
+     * Creates the fragment holding the key-value pairs rendered so far.
+     *
+     * @return The rendered fragment
+     */
+    @NonNull
+    public KeyValueFragment build() {
+      return new KeyValueFragment(
+              text.toString(), Arrays.copyOf(keys, size), Arrays.copyOf(ends, size));
+    }
+  }
+}
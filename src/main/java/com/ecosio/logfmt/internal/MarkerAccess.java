@@ -0,0 +1,146 @@
+package com.ecosio.logfmt.internal;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.ApplyCallbackFor;
+import com.ecosio.logfmt.LogFmtMarker;
+import com.ecosio.logfmt.utils.KeyMasker;
+import com.ecosio.logfmt.utils.Redactor;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Gives the layout access to the rendering of {@link LogFmtMarker} objects without making it part
+ * of the public API of the marker, as the rendering depends on internal types like
+ * {@link EmittedKeys}.
+ *
+ * <p>All methods take the event that is currently formatted, which lazily computed marker values
+ * are memoized for. This way a value is computed at most once per event, even if several appender
+ * or layouts access it, and events formatted concurrently by other threads don't interfere.
+ *
+ * <p>{@link LogFmtMarker} registers its private accessor once its class is initialized, which is
+ * guaranteed to have happened before any marker instance can be rendered.
+ */
+public final class MarkerAccess {
+
+  /**
+   * The accessor registered by {@link LogFmtMarker}.
+   */
+  private static volatile Accessor accessor;
+
+  private MarkerAccess() {
+
+  }
+
+  /**
+   * Registers the accessor of {@link LogFmtMarker}. Only the first registration is kept.
+   *
+   * @param markerAccessor The accessor of the marker class
+   */
+  public static void register(@NonNull final Accessor markerAccessor) {
+    if (accessor == null) {
+      accessor = markerAccessor;
+    }
+  }
+
+  /**
+   * Appends the key-value pairs of the given marker and of all its referenced
+   * <em>LogFmtMarker</em> objects to the provided {@link StringBuilder} object, skipping pairs
+   * that use a native key of the layout.
+   *
+   * @param marker    The marker whose key-value pairs should be appended
+   * @param sb        The {@link StringBuilder} object to append the key-value pairs to
+   * @param keyMasker Optional masker that will obfuscate the values of matching keys
+   * @param redactor  Optional redactor that will replace text matching its rules within values
+   * @param emitted   Optional set of the keys already written to the log line, which the keys of
+   *                  the marker are claimed in
+   * @param event     The event currently formatted or <code>null</code> if lazily computed values
+   *                  should be computed anew
+   */
+  public static void appendTo(@NonNull final LogFmtMarker marker,
+                              @NonNull final StringBuilder sb,
+                              @Nullable final KeyMasker keyMasker,
+                              @Nullable final Redactor redactor,
+                              @Nullable final EmittedKeys emitted,
+                              @Nullable final ILoggingEvent event) {
+    accessor.appendTo(marker, sb, keyMasker, redactor, emitted, event);
+  }
+
+  /**
+   * Applies the callback of the given marker for the given field like
+   * {@link LogFmtMarker#applyCallbackFor(String, ApplyCallbackFor)} does.
+   *
+   * @param marker     The marker whose callback should be applied
+   * @param valueToLog The value of the field to pass to the callback
+   * @param applyFor   The field to apply the callback for
+   * @param event      The event currently formatted
+   * @return The output of the callback or the unmodified value if no callback was applied
+   */
+  @NonNull
+  public static String applyCallbackFor(@NonNull final LogFmtMarker marker,
+                                        @NonNull final String valueToLog,
+                                        @NonNull final ApplyCallbackFor applyFor,
+                                        @NonNull final ILoggingEvent event) {
+    return accessor.applyCallbackFor(marker, valueToLog, applyFor, event);
+  }
+
+  /**
+   * Returns the key-value pairs defined by the given marker like
+   * {@link LogFmtMarker#getDefinedKeyValues()} does.
+   *
+   * @param marker The marker to return the key-value pairs of
+   * @param event  The event currently formatted
+   * @return The key-value pairs defined by the marker
+   */
+  @NonNull
+  public static List<Map.Entry<String, Object>> getDefinedKeyValues(
+          @NonNull final LogFmtMarker marker, @NonNull final ILoggingEvent event) {
+    return accessor.getDefinedKeyValues(marker, event);
+  }
+
+  /**
+   * The methods of {@link LogFmtMarker} the layout needs access to.
+   */
+  public interface Accessor {
+
+    /**
+     * Appends the key-value pairs of the given marker to the provided {@link StringBuilder}
+     * object.
+     *
+     * @param marker    The marker whose key-value pairs should be appended
+     * @param sb        The {@link StringBuilder} object to append the key-value pairs to
+     * @param keyMasker Optional masker that will obfuscate the values of matching keys
+     * @param redactor  Optional redactor that will replace text matching its rules within values
+     * @param emitted   Optional set of the keys already written to the log line
+     * @param event     The event currently formatted, if any
+     */
+    void appendTo(@NonNull LogFmtMarker marker, @NonNull StringBuilder sb,
+                  @Nullable KeyMasker keyMasker, @Nullable Redactor redactor,
+                  @Nullable EmittedKeys emitted, @Nullable ILoggingEvent event);
+
+    /**
+     * Applies the callback of the given marker for the given field.
+     *
+     * @param marker     The marker whose callback should be applied
+     * @param valueToLog The value of the field to pass to the callback
+     * @param applyFor   The field to apply the callback for
+     * @param event      The event currently formatted
+     * @return The output of the callback or the unmodified value if no callback was applied
+     */
+    @NonNull
+    String applyCallbackFor(@NonNull LogFmtMarker marker, @NonNull String valueToLog,
+                            @NonNull ApplyCallbackFor applyFor, @NonNull ILoggingEvent event);
+
+    /**
+     * Returns the key-value pairs defined by the given marker.
+     *
+     * @param marker The marker to return the key-value pairs of
+     * @param event  The event currently formatted
+     * @return The key-value pairs defined by the marker
+     */
+    @NonNull
+    List<Map.Entry<String, Object>> getDefinedKeyValues(@NonNull LogFmtMarker marker,
+                                                        @NonNull ILoggingEvent event);
+  }
+}
@@ -0,0 +1,169 @@
+package com.ecosio.logfmt.internal;
+
+import com.ecosio.logfmt.utils.KeyMasker;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Selects the MDC entries to write to a log line and the order they are written in.
+ *
+ * <p>A selector is compiled once from the <code>&lt;mdcInclude&gt;</code>,
+ * <code>&lt;mdcExclude&gt;</code> and <code>&lt;mdcPromote&gt;</code> configuration elements.
+ * Include and exclude lists accept plain key names as well as patterns with a leading or trailing
+ * asterisk, like <code>&lt;maskPasswords&gt;</code> does. Promoted keys are written first and in
+ * the configured order. If the include list only consists of plain key names, the selected
+ * entries are looked up directly instead of iterating over the whole MDC map. Excluded keys and
+ * native keys of the layout are never written.
+ *
+ * <p>Instances of this class are immutable and thread-safe.
+ */
+public final class MdcSelector {
+
+  /**
+   * A selector writing all MDC entries in the iteration order of the MDC map.
+   */
+  public static final MdcSelector ALL = new MdcSelector(new String[0], null, null, null);
+
+  /**
+   * The keys to write first, in the order they should be written in.
+   */
+  private final String[] promoted;
+  /**
+   * The promoted keys as set, which excludes them from the remaining entries.
+   */
+  private final Set<String> promotedKeys;
+  /**
+   * The keys to write after the promoted ones if only plain key names are included; otherwise
+   * <code>null</code>.
+   */
+  private final String[] included;
+  /**
+   * Matches the keys to write if the include list contains patterns; otherwise <code>null</code>.
+   */
+  private final KeyMasker includeMatcher;
+  /**
+   * Matches the keys to never write or <code>null</code> if no key is excluded.
+   */
+  private final KeyMasker excludeMatcher;
+
+  private MdcSelector(@NonNull final String[] promoted,
+                      @Nullable final String[] included,
+                      @Nullable final KeyMasker includeMatcher,
+                      @Nullable final KeyMasker excludeMatcher) {
+    this.promoted = promoted;
+    this.promotedKeys = Set.of(promoted);
+    this.included = included;
+    this.includeMatcher = includeMatcher;
+    this.excludeMatcher = excludeMatcher;
+  }
+
+  /**
+   * Compiles the given comma separated lists into a new selector.
+   *
+   * @param include Optional list of the keys and patterns to write. All keys are written if no
+   *                list is given
+   * @param exclude Optional list of the keys and patterns to never write
+   * @param promote Optional list of the keys to write first, in the given order
+   * @return The compiled selector
+   */
+  @NonNull
+  public static MdcSelector compile(@Nullable final String include,
+                                    @Nullable final String exclude,
+                                    @Nullable final String promote) {
+    final KeyMasker excludeMatcher = KeyMasker.compile(exclude, false);
+    final Set<String> promoted = select(split(promote), excludeMatcher);
+
+    String[] included = null;
+    KeyMasker includeMatcher = null;
+    final List<String> includes = split(include);
+    if (!includes.isEmpty()) {
+      if (includes.stream().anyMatch(key -> key.startsWith("*") || key.endsWith("*"))) {
+        includeMatcher = KeyMasker.compile(include, false);
+      } else {
+        final Set<String> keys = select(includes, excludeMatcher);
+        keys.removeAll(promoted);
+        included = keys.toArray(new String[0]);
+      }
+    }
+
+    if (promoted.isEmpty() && included == null && includeMatcher == null
+            && excludeMatcher.isEmpty()) {
+      return ALL;
+    }
+    return new MdcSelector(promoted.toArray(new String[0]), included, includeMatcher,
+            excludeMatcher.isEmpty() ? null : excludeMatcher);
+  }
+
+  @NonNull
+  private static List<String> split(@Nullable final String spec) {
+    final List<String> keys = new ArrayList<>();
+    if (spec != null) {
+      for (final String entry : spec.split(",")) {
+        final String key = entry.trim();
+        if (!key.isEmpty()) {
+          keys.add(key);
+        }
+      }
+    }
+    return keys;
+  }
+
+  @NonNull
+  private static Set<String> select(@NonNull final List<String> keys,
+                                    @NonNull final KeyMasker excludeMatcher) {
+    final Set<String> selected = new LinkedHashSet<>();
+    for (final String key : keys) {
+      if (!NativeKey.isNativeKey(key) && !excludeMatcher.isMasked(key)) {
+        selected.add(key);
+      }
+    }
+    return selected;
+  }
+
+  /**
+   * Passes the selected entries of the given MDC map to the given consumer in the order they
+   * should be written in. Promoted and explicitly included keys whose value is <code>null</code>
+   * are treated like absent keys.
+   *
+   * @param mdc      The MDC map of the event
+   * @param consumer The consumer to pass the key and value of each selected entry to
+   */
+  public void forEach(@NonNull final Map<String, String> mdc,
+                      @NonNull final BiConsumer<String, String> consumer) {
+    for (final String key : promoted) {
+      final String value = mdc.get(key);
+      if (value != null) {
+        consumer.accept(key, value);
+      }
+    }
+    if (included != null) {
+      for (final String key : included) {
+        final String value = mdc.get(key);
+        if (value != null) {
+          consumer.accept(key, value);
+        }
+      }
+      return;
+    }
+    mdc.forEach((key, value) -> {
+      if (key != null && isSelected(key)) {
+        consumer.accept(key, value);
+      }
+    });
+  }
+
+  private boolean isSelected(@NonNull final String key) {
+    if (NativeKey.isNativeKey(key)
+            || (includeMatcher != null && !includeMatcher.isMasked(key))
+            || (excludeMatcher != null && excludeMatcher.isMasked(key))) {
+      return false;
+    }
+    return !promotedKeys.contains(key);
+  }
+}
@@ -1,6 +1,7 @@
 package com.ecosio.logfmt.internal;
 
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.Set;
 
 /**
  * Native keys that are automatically added by the Layout.
@@ -46,6 +47,13 @@ public enum NativeKey {
    */
   private final String text;
 
+  /**
+   * The names of all native properties, which allows to check keys in constant time.
+   */
+  private static final Set<String> TEXTS = Set.of(
+          TIME.text, LEVEL.text, MESSAGE.text, APP.text, THREAD.text, PACKAGE.text, MODULE.text,
+          ERROR.text);
+
   NativeKey(@NonNull final String text) {
     this.text = text;
   }
@@ -65,13 +73,6 @@ public enum NativeKey {
    */
   @SuppressWarnings("BooleanMethodIsAlwaysInverted")
   public static boolean isNativeKey(@NonNull final String key) {
-    final NativeKey[] keys = values();
-    for (final NativeKey nativeKey : keys) {
-      if (nativeKey.text.equals(key)) {
-        return true;
-      }
-    }
-
-    return false;
+    return TEXTS.contains(key);
   }
 }
@@ -1,5 +1,7 @@
 package com.ecosio.logfmt.internal;
 
+import ch.qos.logback.classic.Level;
+import com.ecosio.logfmt.DuplicateKeyPolicy;
 import com.ecosio.logfmt.internal.appender.CustomFieldsAppender;
 import com.ecosio.logfmt.internal.appender.ErrorAppender;
 import com.ecosio.logfmt.internal.appender.KeyValueAppender;
@@ -10,6 +12,9 @@ import com.ecosio.logfmt.internal.appender.ModuleAppender;
 import com.ecosio.logfmt.internal.appender.PackageAppender;
 import com.ecosio.logfmt.internal.appender.ThreadAppender;
 import com.ecosio.logfmt.internal.appender.TimeAppender;
+import com.ecosio.logfmt.utils.CredentialScrubber;
+import com.ecosio.logfmt.utils.KeyMasker;
+import com.ecosio.logfmt.utils.Redactor;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
 import java.util.List;
@@ -40,14 +45,70 @@ public class State {
   private List<KeyValueAppender> customAppender;
 
   /**
-   * List of property names whose value segment needs to be obfuscated with three asterix symbols
+   * An optional prefix value that is added at the start of each log line.
+   */
+  private String prefix;
+  /**
+   * An optional application name that is added at the start of each log line.
+   */
+  private String appName;
+  /**
+   * The policy to apply to keys that are written to the same log line more than once.
+   */
+  private DuplicateKeyPolicy duplicateKeyPolicy = DuplicateKeyPolicy.KEEP_ALL;
+  /**
+   * The compiled representation of the current configuration or <code>null</code> if the
+   * configuration changed since the plan was compiled the last time.
+   */
+  private volatile FormatterPlan plan;
+
+  /**
+   * Decides which property names have their value segment obfuscated with three asterix symbols
    * (<code>***</code>).
    */
-  private List<String> maskPasswords;
+  private KeyMasker keyMasker = KeyMasker.NONE;
+  /**
+   * Masks credentials within log messages marked as confidential.
+   */
+  private CredentialScrubber credentialScrubber = CredentialScrubber.DEFAULT;
+  /**
+   * Replaces text matching user-defined redaction rules within log values.
+   */
+  private Redactor redactor = Redactor.NONE;
+  /**
+   * The minimal level of events whose issuing class is taken from the caller data of the event
+   * rather than from the logger name.
+   */
+  private Level callerDataLevel = Level.ALL;
+  /**
+   * Selects the MDC entries to write to the log line.
+   */
+  private MdcSelector mdcSelector = MdcSelector.ALL;
+  /**
+   * Renders the stack traces of logged exceptions within the budget of the layout.
+   */
+  private ThrowableRenderer throwableRenderer = ThrowableRenderer.DEFAULT;
+  /**
+   * Counts recurring exceptions per window or <code>null</code> if every stack trace is written.
+   */
+  private ErrorFingerprints errorFingerprints;
+  /**
+   * The minimal level of events whose exceptions are written with their full stack trace rather
+   * than summarized.
+   */
+  private Level stackTraceLevel = Level.ALL;
   /**
    * The specified time format to log time values in.
    */
   private String timeFormat;
+  /**
+   * The renderer compiled from the specified time format.
+   */
+  private volatile TimeRenderer timeRenderer = new TimeRenderer(TimeRenderer.DEFAULT_PATTERN);
+  /**
+   * Hands out the buffers used to generate log lines.
+   */
+  private final BufferRecycler bufferRecycler = new BufferRecycler();
 
   /**
    * Initializes a new state object and configures the set of default appender.
@@ -105,38 +166,268 @@ public class State {
    */
   public void setCustomAppender(@NonNull final List<KeyValueAppender> customAppender) {
     this.customAppender = List.copyOf(customAppender);
+    this.plan = null;
+  }
+
+  /**
+   * Specifies the prefix value to add at the start of each log line.
+   *
+   * @param prefix The prefix value or <code>null</code> if no prefix should be added
+   */
+  public void setPrefix(@Nullable final String prefix) {
+    this.prefix = prefix;
+    this.plan = null;
+  }
+
+  /**
+   * Returns the prefix value to add at the start of each log line.
+   *
+   * @return The prefix value or <code>null</code> if no prefix should be added
+   */
+  @Nullable
+  public String getPrefix() {
+    return prefix;
   }
 
   /**
-   * Specifies the key names of key-value pairs within the log line that should be masked by three
-   * asterix (<code>***</code>) to obfuscate the actual secret credential.
+   * Specifies the name of the application to add at the start of each log line.
    *
-   * @param maskPasswords The list of keys whose value part needs to be masked
+   * @param appName The application name or <code>null</code> if no name should be added
    */
-  public void setMaskPasswords(@Nullable final List<String> maskPasswords) {
-    if (maskPasswords == null) {
-      this.maskPasswords = List.of();
-    } else {
-      this.maskPasswords = List.copyOf(maskPasswords);
-    }
+  public void setAppName(@Nullable final String appName) {
+    this.appName = appName;
+    this.plan = null;
   }
 
   /**
-   * Returns the list of key names whose value segment needs to be masked.
+   * Returns the name of the application to add at the start of each log line.
    *
-   * @return The list of key names corresponding values need to get masked
+   * @return The application name or <code>null</code> if no name should be added
    */
   @Nullable
-  public List<String> getMaskPasswords() {
-    return maskPasswords;
+  public String getAppName() {
+    return appName;
   }
 
   /**
-   * Specifies the new time format for the timestamp to set on the log line.
+   * Specifies the policy to apply to keys that are written to the same log line more than once.
    *
-   * @param timeFormat The new timestamp format to apply
+   * @param duplicateKeyPolicy The duplicate key policy to apply
+   */
+  public void setDuplicateKeyPolicy(@NonNull final DuplicateKeyPolicy duplicateKeyPolicy) {
+    this.duplicateKeyPolicy = duplicateKeyPolicy;
+    this.plan = null;
+  }
+
+  /**
+   * Returns the policy to apply to keys that are written to the same log line more than once.
+   *
+   * @return The duplicate key policy to apply
+   */
+  @NonNull
+  public DuplicateKeyPolicy getDuplicateKeyPolicy() {
+    return duplicateKeyPolicy;
+  }
+
+  /**
+   * Compiles the current configuration into a new {@link FormatterPlan} which is used for all
+   * subsequent events until the configuration is changed again.
+   *
+   * @return The compiled plan
+   */
+  @NonNull
+  public FormatterPlan compile() {
+    final FormatterPlan compiled = FormatterPlan.compile(this);
+    this.plan = compiled;
+    return compiled;
+  }
+
+  /**
+   * Returns the compiled representation of the current configuration. If the configuration
+   * changed since the plan was compiled the last time, the plan is compiled again.
+   *
+   * @return The compiled plan of the current configuration
+   */
+  @NonNull
+  public FormatterPlan getPlan() {
+    final FormatterPlan compiled = plan;
+    return compiled != null ? compiled : compile();
+  }
+
+  /**
+   * Specifies the masker deciding which key-value pairs within the log line should be masked by
+   * three asterix (<code>***</code>) to obfuscate the actual secret credential.
+   *
+   * @param keyMasker The masker of keys whose value part needs to be masked or <code>null</code>
+   *                  if no values should be masked
+   */
+  public void setKeyMasker(@Nullable final KeyMasker keyMasker) {
+    this.keyMasker = keyMasker != null ? keyMasker : KeyMasker.NONE;
+  }
+
+  /**
+   * Returns the masker deciding which key-value pairs need to be masked.
+   *
+   * @return The masker of keys whose value part needs to be masked
+   */
+  @NonNull
+  public KeyMasker getKeyMasker() {
+    return keyMasker;
+  }
+
+  /**
+   * Specifies the scrubber masking credentials within log messages marked as confidential.
+   *
+   * @param credentialScrubber The scrubber to apply to confidential log messages
+   */
+  public void setCredentialScrubber(@NonNull final CredentialScrubber credentialScrubber) {
+    this.credentialScrubber = credentialScrubber;
+  }
+
+  /**
+   * Returns the scrubber masking credentials within log messages marked as confidential.
+   *
+   * @return The scrubber to apply to confidential log messages
+   */
+  @NonNull
+  public CredentialScrubber getCredentialScrubber() {
+    return credentialScrubber;
+  }
+
+  /**
+   * Specifies the redactor replacing text matching user-defined redaction rules within log values.
+   *
+   * @param redactor The redactor to apply to log values
+   */
+  public void setRedactor(@NonNull final Redactor redactor) {
+    this.redactor = redactor;
+  }
+
+  /**
+   * Returns the redactor replacing text matching user-defined redaction rules within log values.
+   *
+   * @return The redactor to apply to log values
+   */
+  @NonNull
+  public Redactor getRedactor() {
+    return redactor;
+  }
+
+  /**
+   * Specifies the minimal level of events whose issuing class is taken from the caller data of
+   * the event. The logger name is used for events below that level.
+   *
+   * @param callerDataLevel The minimal level to use caller data for; {@link Level#ALL} to use
+   *                        caller data for all events and {@link Level#OFF} to never use it
+   */
+  public void setCallerDataLevel(@NonNull final Level callerDataLevel) {
+    this.callerDataLevel = callerDataLevel;
+  }
+
+  /**
+   * Returns the minimal level of events whose issuing class is taken from the caller data of the
+   * event.
+   *
+   * @return The minimal level to use caller data for
+   */
+  @NonNull
+  public Level getCallerDataLevel() {
+    return callerDataLevel;
+  }
+
+  /**
+   * Specifies the selector picking the MDC entries to write to the log line.
+   *
+   * @param mdcSelector The selector to apply to MDC maps
+   */
+  public void setMdcSelector(@NonNull final MdcSelector mdcSelector) {
+    this.mdcSelector = mdcSelector;
+  }
+
+  /**
+   * Returns the selector picking the MDC entries to write to the log line.
+   *
+   * @return The selector to apply to MDC maps
+   */
+  @NonNull
+  public MdcSelector getMdcSelector() {
+    return mdcSelector;
+  }
+
+  /**
+   * Specifies the renderer writing the stack traces of logged exceptions to the log line.
+   *
+   * @param throwableRenderer The renderer to apply to logged exceptions
+   */
+  public void setThrowableRenderer(@NonNull final ThrowableRenderer throwableRenderer) {
+    this.throwableRenderer = throwableRenderer;
+  }
+
+  /**
+   * Returns the renderer writing the stack traces of logged exceptions to the log line.
+   *
+   * @return The renderer to apply to logged exceptions
+   */
+  @NonNull
+  public ThrowableRenderer getThrowableRenderer() {
+    return throwableRenderer;
+  }
+
+  /**
+   * Specifies the counter of recurring exceptions whose stack trace is only written once per
+   * window.
+   *
+   * @param errorFingerprints The counter of recurring exceptions or <code>null</code> to write
+   *                          every stack trace
+   */
+  public void setErrorFingerprints(@Nullable final ErrorFingerprints errorFingerprints) {
+    this.errorFingerprints = errorFingerprints;
+  }
+
+  /**
+   * Returns the counter of recurring exceptions whose stack trace is only written once per window.
+   *
+   * @return The counter of recurring exceptions or <code>null</code> if every stack trace is
+   *         written
+   */
+  @Nullable
+  public ErrorFingerprints getErrorFingerprints() {
+    return errorFingerprints;
+  }
+
+  /**
+   * Specifies the minimal level of events whose exceptions are written with their full stack
+   * trace. Exceptions of events below that level are summarized by their type, message and root
+   * cause.
+   *
+   * @param stackTraceLevel The minimal level to write stack traces for; {@link Level#ALL} to write
+   *                        stack traces for all events and {@link Level#OFF} to never write them
+   */
+  public void setStackTraceLevel(@NonNull final Level stackTraceLevel) {
+    this.stackTraceLevel = stackTraceLevel;
+  }
+
+  /**
+   * Returns the minimal level of events whose exceptions are written with their full stack trace.
+   *
+   * @return The minimal level to write stack traces for
+   */
+  @NonNull
+  public Level getStackTraceLevel() {
+    return stackTraceLevel;
+  }
+
+  /**
+   * Specifies the new time format for the timestamp to set on the log line. The format is
+   * compiled into a new {@link TimeRenderer} right away.
+   *
+   * @param timeFormat The new timestamp format to apply or <code>null</code> to use the default
+   *                   format
+   * @throws IllegalArgumentException If the time format is invalid
    */
   public void setTimeFormat(@Nullable final String timeFormat) {
+    this.timeRenderer =
+            new TimeRenderer(timeFormat != null ? timeFormat : TimeRenderer.DEFAULT_PATTERN);
     this.timeFormat = timeFormat;
   }
 
@@ -149,4 +440,24 @@ public class State {
   public String getTimeFormat() {
     return this.timeFormat;
   }
+
+  /**
+   * Returns the renderer for the timestamp to set on the log line.
+   *
+   * @return The renderer compiled from the currently specified time format
+   */
+  @NonNull
+  public TimeRenderer getTimeRenderer() {
+    return timeRenderer;
+  }
+
+  /**
+   * Returns the recycler handing out the buffers used to generate log lines.
+   *
+   * @return The buffer recycler of this layout
+   */
+  @NonNull
+  public BufferRecycler getBufferRecycler() {
+    return bufferRecycler;
+  }
 }
@@ -0,0 +1,390 @@
+package com.ecosio.logfmt.internal;
+
+import ch.qos.logback.classic.spi.ClassPackagingData;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.core.CoreConstants;
+import com.ecosio.logfmt.utils.StringUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders the stack trace of an {@link IThrowableProxy} in the format of
+ * {@link ThrowableProxyUtil#asString(IThrowableProxy)}, including causes, suppressed exceptions,
+ * omitted common frames and packaging data.
+ *
+ * <p>Unlike logback, the renderer walks the throwable proxy and its stack trace element proxies
+ * and writes each part directly into the target buffer, either as is or already escaped for a
+ * quoted logfmt value. Escaped stack traces are therefore written into the log line without
+ * building the whole trace as string first and copying it once more for escaping.
+ *
+ * <p>A renderer can furthermore be compiled with a budget limiting the number of frames per
+ * throwable, the depth of nested causes and suppressed exceptions and the total length of the
+ * rendered trace. Frames of excluded packages are folded into a single <code>... N filtered</code>
+ * line per run. All limits are applied while rendering, so skipped parts of the trace are never
+ * written at all. Traces that are still modified after rendering, e.g. by redaction rules, are
+ * rendered without the length budget first and cut by {@link #appendEscaped(StringBuilder,
+ * String)} once they are final.
+ *
+ * <p>Instances of this class are immutable and thread-safe.
+ */
+public final class ThrowableRenderer {
+
+  /**
+   * A renderer writing the whole stack trace, like logback does.
+   */
+  public static final ThrowableRenderer DEFAULT =
+          new ThrowableRenderer(Integer.MAX_VALUE, Integer.MAX_VALUE, new String[0],
+                  Integer.MAX_VALUE);
+
+  /**
+   * The escaped line separator that ends each line of the stack trace.
+   */
+  private static final String ESCAPED_LINE_SEPARATOR =
+          StringUtils.escapeValue(CoreConstants.LINE_SEPARATOR).toString();
+  /**
+   * The line replacing the remainder of a stack trace that exceeds the length budget.
+   */
+  private static final String TRUNCATED = "... truncated";
+  /**
+   * The smallest length budget, which leaves room for the escaped truncation line.
+   */
+  public static final int MIN_LENGTH = TRUNCATED.length() + ESCAPED_LINE_SEPARATOR.length();
+
+  /**
+   * The maximum number of frames written per throwable.
+   */
+  private final int maxFrames;
+  /**
+   * The maximum nesting depth of causes and suppressed exceptions written.
+   */
+  private final int maxCauseDepth;
+  /**
+   * The prefixes of the class names whose frames are not written.
+   */
+  private final String[] excludedPackages;
+  /**
+   * The maximum number of characters of the rendered stack trace.
+   */
+  private final int maxLength;
+
+  private ThrowableRenderer(final int maxFrames, final int maxCauseDepth,
+                            @NonNull final String[] excludedPackages, final int maxLength) {
+    this.maxFrames = maxFrames;
+    this.maxCauseDepth = maxCauseDepth;
+    this.excludedPackages = excludedPackages;
+    this.maxLength = maxLength;
+  }
+
+  /**
+   * Compiles the given budget into a new renderer. Negative limits disable the respective limit.
+   *
+   * @param maxFrames        The maximum number of frames to write per throwable
+   * @param maxCauseDepth    The maximum nesting depth of causes and suppressed exceptions to write.
+   *                         A depth of <code>0</code> only writes the logged throwable itself
+   * @param excludedPackages Optional comma separated list of package prefixes whose frames should
+   *                         not be written
+   * @param maxLength        The maximum number of characters of the escaped stack trace,
+   *                         including the line that marks a truncated trace
+   * @return The compiled renderer
+   * @throws IllegalArgumentException if the length budget is smaller than {@link #MIN_LENGTH}
+   */
+  @NonNull
+  public static ThrowableRenderer compile(final int maxFrames, final int maxCauseDepth,
+                                          @Nullable final String excludedPackages,
+                                          final int maxLength) {
+    if (maxLength >= 0 && maxLength < MIN_LENGTH) {
+      throw new IllegalArgumentException("The maximum length of a stack trace must be at least "
+              + MIN_LENGTH + " characters, but was " + maxLength);
+    }
+    final List<String> prefixes = new ArrayList<>();
+    if (excludedPackages != null) {
+      for (final String entry : excludedPackages.split(",")) {
+        final String prefix = entry.trim();
+        if (!prefix.isEmpty()) {
+          prefixes.add(prefix);
+        }
+      }
+    }
+    if (maxFrames < 0 && maxCauseDepth < 0 && prefixes.isEmpty() && maxLength < 0) {
+      return DEFAULT;
+    }
+    return new ThrowableRenderer(limit(maxFrames), limit(maxCauseDepth),
+            prefixes.toArray(new String[0]), limit(maxLength));
+  }
+
+  private static int limit(final int value) {
+    return value < 0 ? Integer.MAX_VALUE : value;
+  }
+
+  /**
+   * Appends the escaped stack trace of the given throwable proxy to the provided
+   * {@link StringBuilder} object. The enclosing quotation marks are not written.
+   *
+   * @param sb The {@link StringBuilder} object to append the stack trace to
+   * @param tp The throwable proxy to render
+   */
+  public void render(@NonNull final StringBuilder sb, @NonNull final IThrowableProxy tp) {
+    new Output(sb, true, maxLength).renderThrowable(null, 1, 0, tp);
+  }
+
+  /**
+   * Appends the stack trace of the given throwable proxy to the provided {@link StringBuilder}
+   * object as is. All limits but the length budget are applied, which has to be applied by
+   * {@link #appendEscaped(StringBuilder, String)} once the trace was modified.
+   *
+   * @param sb The {@link StringBuilder} object to append the stack trace to
+   * @param tp The throwable proxy to render
+   */
+  public void renderUnescaped(@NonNull final StringBuilder sb,
+                              @NonNull final IThrowableProxy tp) {
+    new Output(sb, false, Integer.MAX_VALUE).renderThrowable(null, 1, 0, tp);
+  }
+
+  /**
+   * Appends the given, already rendered stack trace escaped to the provided {@link StringBuilder}
+   * object and applies the length budget to the escaped trace. The trace is cut after the last
+   * line that leaves room for the truncation line like {@link #render(StringBuilder,
+   * IThrowableProxy)} does. The enclosing quotation marks are not written.
+   *
+   * @param sb    The {@link StringBuilder} object to append the stack trace to
+   * @param trace The rendered stack trace
+   */
+  public void appendEscaped(@NonNull final StringBuilder sb, @NonNull final String trace) {
+    new Output(sb, true, maxLength).appendLines(trace);
+  }
+
+  /**
+   * Returns whether the length of the stack trace is limited.
+   *
+   * @return <code>true</code> if a length budget is configured
+   */
+  public boolean isLengthLimited() {
+    return maxLength != Integer.MAX_VALUE;
+  }
+
+  private boolean isExcluded(@NonNull final StackTraceElementProxy frame) {
+    if (excludedPackages.length == 0) {
+      return false;
+    }
+    final String className = frame.getStackTraceElement().getClassName();
+    for (final String prefix : excludedPackages) {
+      if (className.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * The target of a single rendering, which keeps track of the length budget.
+   */
+  private final class Output {
+
+    private final StringBuilder sb;
+    private final boolean escaped;
+    /**
+     * The maximum number of characters of the trace.
+     */
+    private final int limit;
+    /**
+     * The position of the stack trace within the target buffer.
+     */
+    private final int start;
+    /**
+     * The length of the rendered trace up to which the truncation line still fits into the budget.
+     */
+    private final int safeLength;
+    /**
+     * The end of the last line that leaves room for the truncation line.
+     */
+    private int safeEnd;
+
+    Output(@NonNull final StringBuilder sb, final boolean escaped, final int limit) {
+      this.sb = sb;
+      this.escaped = escaped;
+      this.limit = limit;
+      this.start = sb.length();
+      this.safeEnd = start;
+      this.safeLength = limit - TRUNCATED.length() - lineSeparator().length();
+    }
+
+    void appendLines(@NonNull final String text) {
+      final String separator = CoreConstants.LINE_SEPARATOR;
+      int from = 0;
+      while (from < text.length()) {
+        final int end = text.indexOf(separator, from);
+        if (end < 0) {
+          append(text.substring(from));
+          checkLength();
+          return;
+        }
+        append(text.substring(from, end));
+        if (!endLine()) {
+          return;
+        }
+        from = end + separator.length();
+      }
+    }
+
+    boolean renderThrowable(@Nullable final String prefix, final int indent, final int depth,
+                            @NonNull final IThrowableProxy tp) {
+      appendIndent(indent - 1);
+      if (prefix != null) {
+        sb.append(prefix);
+      }
+      if (tp.isCyclic()) {
+        sb.append("[CIRCULAR REFERENCE: ");
+        appendExceptionMessage(tp);
+        sb.append(']');
+      } else {
+        appendExceptionMessage(tp);
+      }
+      if (!endLine() || !appendFrames(indent, tp)) {
+        return false;
+      }
+
+      final IThrowableProxy[] suppressed = tp.getSuppressed();
+      if (suppressed != null && suppressed.length > 0) {
+        if (depth >= maxCauseDepth) {
+          if (!appendOmitted(indent, suppressed.length, " suppressed omitted")) {
+            return false;
+          }
+        } else {
+          for (final IThrowableProxy current : suppressed) {
+            if (!renderThrowable("Suppressed: ", indent + 1, depth + 1, current)) {
+              return false;
+            }
+          }
+        }
+      }
+
+      final IThrowableProxy cause = tp.getCause();
+      if (cause == null) {
+        return true;
+      }
+      if (depth >= maxCauseDepth) {
+        int causes = 0;
+        for (IThrowableProxy current = cause; current != null; current = current.getCause()) {
+          causes++;
+        }
+        return appendOmitted(indent, causes, " causes omitted");
+      }
+      return renderThrowable("Caused by: ", indent, depth + 1, cause);
+    }
+
+    private void appendExceptionMessage(@NonNull final IThrowableProxy tp) {
+      append(tp.getClassName());
+      sb.append(": ");
+      append(String.valueOf(tp.getMessage()));
+    }
+
+    private boolean appendFrames(final int indent, @NonNull final IThrowableProxy tp) {
+      final StackTraceElementProxy[] frames = tp.getStackTraceElementProxyArray();
+      final int commonFrames = tp.getCommonFrames();
+      final int ownFrames = frames.length - commonFrames;
+      int written = 0;
+      int filtered = 0;
+      for (int i = 0; i < ownFrames; i++) {
+        final StackTraceElementProxy frame = frames[i];
+        if (isExcluded(frame)) {
+          filtered++;
+          continue;
+        }
+        if (filtered > 0) {
+          if (!appendOmitted(indent, filtered, " filtered")) {
+            return false;
+          }
+          filtered = 0;
+        }
+        if (written == maxFrames) {
+          return appendOmitted(indent, ownFrames - i, " frames truncated")
+                  && appendCommonFrames(indent, commonFrames);
+        }
+        appendIndent(indent);
+        append(frame.getSTEAsString());
+        appendPackagingData(frame.getClassPackagingData());
+        if (!endLine()) {
+          return false;
+        }
+        written++;
+      }
+      if (filtered > 0 && !appendOmitted(indent, filtered, " filtered")) {
+        return false;
+      }
+      return appendCommonFrames(indent, commonFrames);
+    }
+
+    private boolean appendCommonFrames(final int indent, final int commonFrames) {
+      return commonFrames <= 0 || appendOmitted(indent, commonFrames, " common frames omitted");
+    }
+
+    // packaging data is deprecated by logback, but still part of the format logback writes
+    @SuppressWarnings("deprecation")
+    private void appendPackagingData(@Nullable final ClassPackagingData data) {
+      if (data == null) {
+        return;
+      }
+      sb.append(data.isExact() ? " [" : " ~[");
+      append(data.getCodeLocation());
+      sb.append(':');
+      append(data.getVersion());
+      sb.append(']');
+    }
+
+    private boolean appendOmitted(final int indent, final int count, @NonNull final String what) {
+      appendIndent(indent);
+      sb.append("... ").append(count).append(what);
+      return endLine();
+    }
+
+    private void appendIndent(final int indent) {
+      for (int i = 0; i < indent; i++) {
+        sb.append(escaped ? "\\t" : "\t");
+      }
+    }
+
+    private boolean endLine() {
+      sb.append(lineSeparator());
+      return checkLength();
+    }
+
+    /**
+     * Checks the length budget after a line was written. If the line exceeds the budget, the
+     * trace is cut after the last line that leaves room for the truncation line, which is written
+     * instead.
+     *
+     * @return <code>true</code> if rendering may continue; <code>false</code> if the trace was
+     *         truncated
+     */
+    private boolean checkLength() {
+      final int length = sb.length() - start;
+      if (length <= safeLength) {
+        safeEnd = sb.length();
+        return true;
+      }
+      if (length <= limit) {
+        return true;
+      }
+      sb.setLength(safeEnd);
+      sb.append(TRUNCATED).append(lineSeparator());
+      return false;
+    }
+
+    @NonNull
+    private String lineSeparator() {
+      return escaped ? ESCAPED_LINE_SEPARATOR : CoreConstants.LINE_SEPARATOR;
+    }
+
+    private void append(@Nullable final String value) {
+      if (escaped && value != null) {
+        StringUtils.appendEscaped(sb, value);
+      } else {
+        sb.append(value);
+      }
+    }
+  }
+}
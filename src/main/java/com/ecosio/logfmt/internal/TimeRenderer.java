@@ -0,0 +1,322 @@
+package com.ecosio.logfmt.internal;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.utils.StringUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Renders the timestamp of log events according to a configured date and time pattern.
+ *
+ * <p>The pattern is compiled once into an immutable {@link DateTimeFormatter} for the default
+ * time-zone and locale of the system, just like logback does for its <code>%date</code>
+ * conversion word. As consecutive log events usually share the same second, the part of the
+ * timestamp that only depends on the second is rendered once per second and cached. If the
+ * pattern contains a single fraction-of-second field (<code>S</code>) the cached rendering is split
+ * around that field and only the fraction digits are written per event. Patterns containing other
+ * sub-second fields or more than one fraction-of-second field are formatted for each event.
+ *
+ * <p>Besides date and time patterns the numeric modes {@value #EPOCH_MILLIS} and
+ * {@value #EPOCH_MICROS} as well as the ISO-8601 mode {@value #ISO8601_NANOS} are supported. These
+ * modes write the digits of the event's {@link Instant} straight into the log line without going
+ * through any formatter.
+ *
+ * <p>Instances of this class are thread-safe.
+ */
+public final class TimeRenderer {
+
+  /**
+   * Default date and time pattern.
+   */
+  public static final String DEFAULT_PATTERN = "yyyy-MM-dd'T'HH:mm:ss";
+
+  /**
+   * Time mode that renders the milliseconds since the epoch, i.e. <code>1512051025123</code>.
+   */
+  public static final String EPOCH_MILLIS = "epochMillis";
+  /**
+   * Time mode that renders the microseconds since the epoch, i.e. <code>1512051025123456</code>.
+   */
+  public static final String EPOCH_MICROS = "epochMicros";
+  /**
+   * Time mode that renders the UTC date and time with nanosecond precision in the ISO-8601
+   * format, i.e. <code>2017-11-30T14:10:25.123456789Z</code>.
+   */
+  public static final String ISO8601_NANOS = "iso8601Nanos";
+
+  /**
+   * The maximum number of fraction-of-second digits supported by {@link DateTimeFormatter}.
+   */
+  private static final int MAX_FRACTION_DIGITS = 9;
+  /**
+   * The number of days from 0000-03-01 to the epoch.
+   */
+  private static final long DAYS_0000_TO_1970 = 719_468L;
+  /**
+   * The number of days of a 400 years cycle of the gregorian calendar.
+   */
+  private static final long DAYS_PER_CYCLE = 146_097L;
+
+  /**
+   * The configured date and time pattern or time mode.
+   */
+  private final String pattern;
+  /**
+   * How the timestamp is rendered.
+   */
+  private final Mode mode;
+  /**
+   * The formatter for the complete pattern.
+   */
+  private final DateTimeFormatter formatter;
+  /**
+   * The formatter for the part of the pattern preceding the fraction-of-second field or
+   * <code>null</code> if the rendered timestamp can not be cached per second.
+   */
+  private final DateTimeFormatter prefixFormatter;
+  /**
+   * The formatter for the part of the pattern following the fraction-of-second field or
+   * <code>null</code> if the rendered timestamp can not be cached per second.
+   */
+  private final DateTimeFormatter suffixFormatter;
+  /**
+   * The number of fraction-of-second digits to write between the cached prefix and suffix.
+   */
+  private final int fractionDigits;
+  /**
+   * The rendering of the most recently formatted second. Updates from concurrent threads may
+   * overwrite each other, which only causes the second to be rendered once more.
+   */
+  private volatile CachedSecond cache;
+
+  /**
+   * Compiles the given date and time pattern or time mode.
+   *
+   * @param pattern The date and time pattern to render timestamps with or one of the time modes
+   *                {@value #EPOCH_MILLIS}, {@value #EPOCH_MICROS} and {@value #ISO8601_NANOS}
+   * @throws IllegalArgumentException If the pattern is invalid
+   */
+  public TimeRenderer(@NonNull final String pattern) {
+    this.pattern = pattern;
+    this.mode = switch (pattern) {
+      case EPOCH_MILLIS -> Mode.EPOCH_MILLIS;
+      case EPOCH_MICROS -> Mode.EPOCH_MICROS;
+      case ISO8601_NANOS -> Mode.ISO8601_NANOS;
+      default -> Mode.PATTERN;
+    };
+    this.formatter = mode == Mode.PATTERN ? compile(pattern) : null;
+
+    final int[] fraction = mode == Mode.PATTERN ? findCacheableFraction(pattern) : null;
+    if (fraction == null) {
+      this.prefixFormatter = null;
+      this.suffixFormatter = null;
+      this.fractionDigits = 0;
+    } else {
+      this.prefixFormatter = compile(pattern.substring(0, fraction[0]));
+      this.suffixFormatter = compile(pattern.substring(fraction[0] + fraction[1]));
+      this.fractionDigits = fraction[1];
+    }
+  }
+
+  /**
+   * Returns the date and time pattern or time mode timestamps are rendered with.
+   *
+   * @return The date and time pattern or time mode
+   */
+  @NonNull
+  public String getPattern() {
+    return pattern;
+  }
+
+  /**
+   * Renders the time the given event was created at and appends it, escaped and put between quotes
+   * if needed, to the provided {@link StringBuilder} object.
+   *
+   * @param sb    The {@link StringBuilder} object to append the rendered timestamp to
+   * @param event The event to render the time of
+   */
+  public void appendValue(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
+    final Instant instant = event.getInstant();
+    switch (mode) {
+      case EPOCH_MILLIS -> sb.append(instant.toEpochMilli());
+      case EPOCH_MICROS -> sb.append(Math.addExact(
+              Math.multiplyExact(instant.getEpochSecond(), 1_000_000L), instant.getNano() / 1000));
+      case ISO8601_NANOS -> appendIso8601(sb, instant);
+      default -> appendPattern(sb, instant);
+    }
+  }
+
+  private void appendPattern(@NonNull final StringBuilder sb, @NonNull final Instant instant) {
+    if (prefixFormatter == null) {
+      StringUtils.appendValue(sb, formatter.format(instant));
+      return;
+    }
+
+    final long epochSecond = instant.getEpochSecond();
+    CachedSecond cached = cache;
+    if (cached == null || cached.epochSecond != epochSecond) {
+      cached = render(epochSecond);
+      cache = cached;
+    }
+    sb.append(cached.prefix);
+    appendDigits(sb, instant.getNano() / pow10(MAX_FRACTION_DIGITS - fractionDigits),
+            fractionDigits);
+    sb.append(cached.suffix);
+  }
+
+  /**
+   * Appends the given instant in the ISO-8601 format with nanosecond precision in UTC. As the
+   * value contains colons it is always put between quotes.
+   *
+   * @param sb      The {@link StringBuilder} object to append the rendered instant to
+   * @param instant The instant to render
+   */
+  private static void appendIso8601(@NonNull final StringBuilder sb,
+                                    @NonNull final Instant instant) {
+    final long epochSecond = instant.getEpochSecond();
+    final long epochDay = Math.floorDiv(epochSecond, 86_400L);
+    final int secondOfDay = (int) Math.floorMod(epochSecond, 86_400L);
+
+    // converts the days since the epoch to a date of the proleptic gregorian calendar, using eras
+    // of 400 years that start on the 1st of March so that leap days fall at the end of a year
+    final long days = epochDay + DAYS_0000_TO_1970;
+    final long era = Math.floorDiv(days, DAYS_PER_CYCLE);
+    final long dayOfEra = days - era * DAYS_PER_CYCLE;
+    final long yearOfEra =
+            (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+    final long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    final long shiftedMonth = (5 * dayOfYear + 2) / 153;
+    final int day = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+    final int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+    final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+
+    sb.append('"');
+    if (year >= 0 && year <= 9999) {
+      appendDigits(sb, (int) year, 4);
+    } else {
+      sb.append(year);
+    }
+    sb.append('-');
+    appendDigits(sb, month, 2);
+    sb.append('-');
+    appendDigits(sb, day, 2);
+    sb.append('T');
+    appendDigits(sb, secondOfDay / 3600, 2);
+    sb.append(':');
+    appendDigits(sb, secondOfDay / 60 % 60, 2);
+    sb.append(':');
+    appendDigits(sb, secondOfDay % 60, 2);
+    sb.append('.');
+    appendDigits(sb, instant.getNano(), MAX_FRACTION_DIGITS);
+    sb.append("Z\"");
+  }
+
+  @NonNull
+  private CachedSecond render(final long epochSecond) {
+    final Instant instant = Instant.ofEpochSecond(epochSecond);
+    final String prefix = prefixFormatter.format(instant);
+    final String suffix = suffixFormatter.format(instant);
+    // fraction digits never need quoting, hence quoting only depends on the surrounding parts
+    if (StringUtils.needsQuoting(prefix) || StringUtils.needsQuoting(suffix)) {
+      return new CachedSecond(epochSecond,
+              "\"" + StringUtils.escapeValue(prefix),
+              StringUtils.escapeValue(suffix) + "\"");
+    }
+    return new CachedSecond(epochSecond, prefix, suffix);
+  }
+
+  /**
+   * Appends the given non-negative value with the given number of digits, padded with leading
+   * zeros.
+   *
+   * @param sb     The {@link StringBuilder} object to append the digits to
+   * @param value  The value to append
+   * @param digits The number of digits to append
+   */
+  private static void appendDigits(@NonNull final StringBuilder sb, final int value,
+                                   final int digits) {
+    if (digits <= 0) {
+      return;
+    }
+    for (int divisor = pow10(digits - 1); divisor > 0; divisor /= 10) {
+      sb.append((char) ('0' + value / divisor % 10));
+    }
+  }
+
+  private static int pow10(final int exponent) {
+    int result = 1;
+    for (int i = 0; i < exponent; i++) {
+      result *= 10;
+    }
+    return result;
+  }
+
+  @NonNull
+  private static DateTimeFormatter compile(@NonNull final String pattern) {
+    return DateTimeFormatter.ofPattern(pattern, Locale.getDefault())
+            .withZone(ZoneId.systemDefault());
+  }
+
+  /**
+   * Looks up the position of the fraction-of-second field within the given pattern if the
+   * rendered timestamp can be cached per second.
+   *
+   * @param pattern The date and time pattern to inspect
+   * @return An array holding the start index and length of the only fraction-of-second field, an
+   *         empty field at the end of the pattern if the pattern has no sub-second fields at all or
+   *         <code>null</code> if the pattern contains other sub-second fields, several
+   *         fraction-of-second fields or optional sections
+   */
+  private static int[] findCacheableFraction(@NonNull final String pattern) {
+    int[] fraction = null;
+    boolean quoted = false;
+    int i = 0;
+    while (i < pattern.length()) {
+      final char c = pattern.charAt(i);
+      if (c == '\'') {
+        quoted = !quoted;
+        i++;
+      } else if (quoted) {
+        i++;
+      } else if (c == 'S') {
+        int end = i;
+        while (end < pattern.length() && pattern.charAt(end) == 'S') {
+          end++;
+        }
+        if (fraction != null || end - i > MAX_FRACTION_DIGITS) {
+          return null;
+        }
+        fraction = new int[] {i, end - i};
+        i = end;
+      } else if (c == 'n' || c == 'N' || c == 'A' || c == 'p' || c == '[' || c == ']') {
+        return null;
+      } else {
+        i++;
+      }
+    }
+    return fraction != null ? fraction : new int[] {pattern.length(), 0};
+  }
+
+  /**
+   * The supported ways of rendering a timestamp.
+   */
+  private enum Mode {
+    PATTERN,
+    EPOCH_MILLIS,
+    EPOCH_MICROS,
+    ISO8601_NANOS
+  }
+
+  /**
+   * The rendering of a single second, already escaped and quoted if needed.
+   *
+   * @param epochSecond The second since the epoch the parts were rendered for
+   * @param prefix      The rendered part preceding the fraction-of-second digits
+   * @param suffix      The rendered part following the fraction-of-second digits
+   */
+  private record CachedSecond(long epochSecond, @NonNull String prefix, @NonNull String suffix) {
+  }
+}
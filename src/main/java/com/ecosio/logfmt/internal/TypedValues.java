@@ -0,0 +1,168 @@
+package com.ecosio.logfmt.internal;
+
+import com.ecosio.logfmt.utils.StringUtils;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+/**
+ * Writes values of common types directly into a log line without converting them to a string and
+ * scanning that string for characters that require quoting first.
+ *
+ * <p>The textual representation of numbers, booleans, UUIDs, durations and big decimals only
+ * consists of characters that never require quoting, so these values are appended as they are.
+ * Instants always contain colons and are therefore always put between quotation marks. The
+ * rendered constants of enums that don't override {@link Enum#toString()} are cached per enum
+ * type. The output matches the <code>toString()</code> representation of each type.
+ */
+public final class TypedValues {
+
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+  private static final int NANOS_PER_SECOND = 1_000_000_000;
+  private static final int SECONDS_PER_HOUR = 3600;
+  private static final int SECONDS_PER_MINUTE = 60;
+
+  /**
+   * The rendered constants of each enum type, indexed by their ordinal. Constants that override
+   * {@link Enum#toString()} are <code>null</code>, as their representation may change.
+   */
+  private static final ClassValue<String[]> ENUM_CONSTANTS = new ClassValue<>() {
+    @Override
+    protected String[] computeValue(@NonNull final Class<?> type) {
+      final Object[] constants = type.getEnumConstants();
+      final String[] rendered = new String[constants.length];
+      for (int i = 0; i < constants.length; i++) {
+        final Enum<?> constant = (Enum<?>) constants[i];
+        if (!overridesToString(constant.getClass())) {
+          final StringBuilder sb = new StringBuilder();
+          StringUtils.appendValue(sb, constant.name());
+          rendered[i] = sb.toString();
+        }
+      }
+      return rendered;
+    }
+  };
+
+  private TypedValues() {
+
+  }
+
+  /**
+   * Appends the given value to the provided {@link StringBuilder} object if it is of a type that
+   * can be written directly.
+   *
+   * @param sb    The {@link StringBuilder} object to append the value to
+   * @param value The value to append
+   * @return <code>true</code> if the value was appended; <code>false</code> if the value is of
+   *         another type and needs to be converted to a string by the caller
+   */
+  public static boolean append(@NonNull final StringBuilder sb, @NonNull final Object value) {
+    if (value instanceof Long || value instanceof Integer
+            || value instanceof Short || value instanceof Byte) {
+      sb.append(((Number) value).longValue());
+    } else if (value instanceof Double number) {
+      sb.append(number.doubleValue());
+    } else if (value instanceof Float number) {
+      sb.append(number.floatValue());
+    } else if (value instanceof Boolean bool) {
+      sb.append(bool.booleanValue());
+    } else if (value instanceof BigDecimal number) {
+      // the string representation is cached by BigDecimal itself
+      sb.append(number.toString());
+    } else if (value instanceof UUID uuid) {
+      appendUuid(sb, uuid);
+    } else if (value instanceof Instant instant) {
+      sb.append('"');
+      DateTimeFormatter.ISO_INSTANT.formatTo(instant, sb);
+      sb.append('"');
+    } else if (value instanceof Duration duration) {
+      appendDuration(sb, duration);
+    } else if (value instanceof Enum<?> constant) {
+      final String rendered = ENUM_CONSTANTS.get(constant.getDeclaringClass())[constant.ordinal()];
+      if (rendered == null) {
+        return false;
+      }
+      sb.append(rendered);
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  private static boolean overridesToString(@NonNull final Class<?> type) {
+    try {
+      return type.getMethod("toString").getDeclaringClass() != Enum.class;
+    } catch (final NoSuchMethodException e) {
+      return true;
+    }
+  }
+
+  private static void appendUuid(@NonNull final StringBuilder sb, @NonNull final UUID uuid) {
+    final long msb = uuid.getMostSignificantBits();
+    final long lsb = uuid.getLeastSignificantBits();
+    appendHex(sb, msb >>> 32, 8);
+    sb.append('-');
+    appendHex(sb, msb >>> 16, 4);
+    sb.append('-');
+    appendHex(sb, msb, 4);
+    sb.append('-');
+    appendHex(sb, lsb >>> 48, 4);
+    sb.append('-');
+    appendHex(sb, lsb, 12);
+  }
+
+  private static void appendHex(@NonNull final StringBuilder sb, final long value,
+                                final int digits) {
+    for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+      sb.append(HEX_DIGITS[(int) (value >>> shift) & 0xf]);
+    }
+  }
+
+  /**
+   * Appends the ISO-8601 representation of the given duration like {@link Duration#toString()}
+   * does, i.e. <code>PT8H6M12.345S</code>.
+   *
+   * @param sb       The {@link StringBuilder} object to append the duration to
+   * @param duration The duration to append
+   */
+  private static void appendDuration(@NonNull final StringBuilder sb,
+                                     @NonNull final Duration duration) {
+    if (duration.isZero()) {
+      sb.append("PT0S");
+      return;
+    }
+    final long seconds = duration.getSeconds();
+    final int nanos = duration.getNano();
+    final long effectiveTotalSecs = seconds < 0 && nanos > 0 ? seconds + 1 : seconds;
+    final long hours = effectiveTotalSecs / SECONDS_PER_HOUR;
+    final int minutes = (int) ((effectiveTotalSecs % SECONDS_PER_HOUR) / SECONDS_PER_MINUTE);
+    final int secs = (int) (effectiveTotalSecs % SECONDS_PER_MINUTE);
+    sb.append("PT");
+    if (hours != 0) {
+      sb.append(hours).append('H');
+    }
+    if (minutes != 0) {
+      sb.append(minutes).append('M');
+    }
+    if (secs == 0 && nanos == 0 && (hours != 0 || minutes != 0)) {
+      return;
+    }
+    if (seconds < 0 && nanos > 0 && secs == 0) {
+      sb.append("-0");
+    } else {
+      sb.append(secs);
+    }
+    if (nanos > 0) {
+      final int pos = sb.length();
+      sb.append(seconds < 0 ? 2L * NANOS_PER_SECOND - nanos : nanos + NANOS_PER_SECOND);
+      while (sb.charAt(sb.length() - 1) == '0') {
+        sb.setLength(sb.length() - 1);
+      }
+      sb.setCharAt(pos, '.');
+    }
+    sb.append('S');
+  }
+}
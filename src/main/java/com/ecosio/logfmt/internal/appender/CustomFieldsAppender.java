@@ -1,6 +1,8 @@
 package com.ecosio.logfmt.internal.appender;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.FormatterPlan;
 import com.ecosio.logfmt.internal.State;
 import com.ecosio.logfmt.utils.StringUtils;
 import edu.umd.cs.findbugs.annotations.NonNull;
@@ -24,11 +26,13 @@ public class CustomFieldsAppender extends KeyValueAppender {
   }
 
   @Override
-  public void append(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
+  public void append(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                     @NonNull final ILoggingEvent event, @NonNull final FormatterPlan plan) {
     final List<Marker> markers = event.getMarkerList();
     if (markers != null) {
       for (final Marker marker : markers) {
-        StringUtils.appendIfAppropriate(marker, sb, state.getMaskPasswords());
+        StringUtils.appendIfAppropriate(
+                marker, sb, state.getKeyMasker(), state.getRedactor(), keys, event);
       }
     }
   }
@@ -1,20 +1,61 @@
 package com.ecosio.logfmt.internal.appender;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import ch.qos.logback.classic.spi.ThrowableProxyUtil;
+import ch.qos.logback.classic.spi.IThrowableProxy;
 import com.ecosio.logfmt.ApplyCallbackFor;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.ErrorFingerprints;
+import com.ecosio.logfmt.internal.FormatterPlan;
 import com.ecosio.logfmt.internal.NativeKey;
 import com.ecosio.logfmt.internal.State;
+import com.ecosio.logfmt.internal.ThrowableRenderer;
+import com.ecosio.logfmt.utils.Redactor;
 import com.ecosio.logfmt.utils.StringUtils;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
 import java.util.List;
 import org.slf4j.Marker;
 
 /**
  * An error appender that will take care of appending stacktrace information to the log line.
+ *
+ * <p>Unless an {@link ApplyCallbackFor#ERROR} callback or redaction rules need to see the whole
+ * stack trace as string, the trace is rendered and escaped directly into the log line by the
+ * {@link ThrowableRenderer}. Otherwise the length budget of the renderer is applied to the
+ * escaped trace once callbacks and redaction rules were applied.
+ *
+ * <p>If {@link ErrorFingerprints} are configured, the stack trace of a recurring exception is
+ * only written once per window, along with the fingerprint of the exception as
+ * <code>error_hash</code> property. Subsequent occurrences within the window only write the
+ * <code>error_hash</code> and the number of occurrences as <code>error_repeat</code> property.
+ *
+ * <p>Exceptions of events below the configured stack trace level are summarized by their type,
+ * message and root cause without rendering the stack trace at all.
  */
 public class ErrorAppender extends KeyValueAppender {
 
+  /**
+   * The key of the property holding the fingerprint of the exception.
+   */
+  private static final String ERROR_HASH = "error_hash";
+  /**
+   * The key of the property holding the number of occurrences of the exception within the window.
+   */
+  private static final String ERROR_REPEAT = "error_repeat";
+  /**
+   * The key of the property holding the class name of the summarized exception.
+   */
+  private static final String ERROR_TYPE = "error_type";
+  /**
+   * The key of the property holding the message of the summarized exception.
+   */
+  private static final String ERROR_MSG = "error_msg";
+  /**
+   * The key of the property holding the class name and message of the innermost cause of the
+   * summarized exception.
+   */
+  private static final String ROOT_CAUSE = "root_cause";
+
   /**
    * Instantiates a new object of this class and assigns the passed in state object to its internal
    * state.
@@ -26,16 +67,83 @@ public class ErrorAppender extends KeyValueAppender {
   }
 
   @Override
-  public void append(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
-    if (event.getThrowableProxy() != null) {
-      String msg = ThrowableProxyUtil.asString(event.getThrowableProxy());
+  public void append(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                     @NonNull final ILoggingEvent event, @NonNull final FormatterPlan plan) {
+    final IThrowableProxy throwableProxy = event.getThrowableProxy();
+    if (throwableProxy != null) {
       final List<Marker> markers = event.getMarkerList();
-      if (markers != null) {
-        msg = handleCustomCallbacks(markers, msg, ApplyCallbackFor.ERROR);
+      final ErrorFingerprints fingerprints = state.getErrorFingerprints();
+      if (!event.getLevel().isGreaterOrEqual(state.getStackTraceLevel())) {
+        appendSummary(sb, keys, throwableProxy);
+      } else if (fingerprints == null) {
+        appendStackTrace(sb, keys, throwableProxy, event, plan);
+      } else {
+        final long fingerprint = ErrorFingerprints.fingerprint(throwableProxy);
+        final int occurrence = fingerprints.record(fingerprint, event.getTimeStamp());
+        if (occurrence == 1) {
+          appendStackTrace(sb, keys, throwableProxy, event, plan);
+        }
+        StringUtils.appendKeyValueAndEscape(sb, ERROR_HASH,
+                ErrorFingerprints.format(fingerprint), null, null, keys);
+        if (occurrence > 1) {
+          StringUtils.appendKeyValueAndEscape(sb, ERROR_REPEAT, occurrence, null, null, keys);
+        }
       }
-      StringUtils.appendKeyValueAndEscape(sb, NativeKey.ERROR.toString(), msg);
 
-      appendCustomCallbackKeysIfNotPresentYet(sb, markers, NativeKey.ERROR.toString());
+      appendCustomCallbackKeysIfNotPresentYet(sb, keys, markers, event, plan, NativeKey.ERROR);
+    }
+  }
+
+  private void appendSummary(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                             @NonNull final IThrowableProxy throwableProxy) {
+    final Redactor redactor = state.getRedactor();
+    StringUtils.appendKeyValueAndEscape(
+            sb, ERROR_TYPE, throwableProxy.getClassName(), null, null, keys);
+    if (throwableProxy.getMessage() != null) {
+      StringUtils.appendKeyValueAndEscape(
+              sb, ERROR_MSG, throwableProxy.getMessage(), null, redactor, keys);
+    }
+    IThrowableProxy rootCause = throwableProxy.getCause();
+    if (rootCause != null) {
+      while (rootCause.getCause() != null) {
+        rootCause = rootCause.getCause();
+      }
+      final String rootMessage = rootCause.getMessage();
+      StringUtils.appendKeyValueAndEscape(sb, ROOT_CAUSE, rootMessage != null
+              ? rootCause.getClassName() + ": " + rootMessage
+              : rootCause.getClassName(), null, redactor, keys);
+    }
+  }
+
+  private void appendStackTrace(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                                @NonNull final IThrowableProxy throwableProxy,
+                                @NonNull final ILoggingEvent event,
+                                @NonNull final FormatterPlan plan) {
+    final List<Marker> markers = event.getMarkerList();
+    final Redactor redactor = state.getRedactor();
+    final ThrowableRenderer renderer = state.getThrowableRenderer();
+    keys.add(NativeKey.ERROR.toString());
+    if (redactor.isEmpty() && !hasCustomCallbacks(markers, ApplyCallbackFor.ERROR)) {
+      // a stack trace always contains line separators, hence the value is always quoted
+      sb.append(plan.keyToken(NativeKey.ERROR)).append('"');
+      renderer.render(sb, throwableProxy);
+      sb.append("\" ");
+    } else {
+      final StringBuilder trace = new StringBuilder(1024);
+      renderer.renderUnescaped(trace, throwableProxy);
+      String msg = trace.toString();
+      if (markers != null) {
+        msg = handleCustomCallbacks(markers, msg, ApplyCallbackFor.ERROR, event);
+      }
+      if (msg != null && renderer.isLengthLimited()) {
+        // the length budget applies to the final value, hence it is cut after redaction
+        sb.append(plan.keyToken(NativeKey.ERROR)).append('"');
+        renderer.appendEscaped(sb, redactor.redact(msg));
+        sb.append("\" ");
+      } else {
+        sb.append(plan.keyToken(NativeKey.ERROR));
+        StringUtils.appendMaskedValue(sb, NativeKey.ERROR.toString(), msg, null, redactor);
+      }
     }
   }
 }
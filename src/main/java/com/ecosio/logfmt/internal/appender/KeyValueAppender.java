@@ -3,7 +3,12 @@ package com.ecosio.logfmt.internal.appender;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import com.ecosio.logfmt.ApplyCallbackFor;
 import com.ecosio.logfmt.LogFmtMarker;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.FormatterPlan;
+import com.ecosio.logfmt.internal.MarkerAccess;
+import com.ecosio.logfmt.internal.NativeKey;
 import com.ecosio.logfmt.internal.State;
+import com.ecosio.logfmt.utils.StacktraceHelper;
 import com.ecosio.logfmt.utils.StringUtils;
 import edu.umd.cs.findbugs.annotations.NonNull;
 import edu.umd.cs.findbugs.annotations.Nullable;
@@ -13,9 +18,9 @@ import org.slf4j.Marker;
 
 /**
  * Functional interface for passing appender method references around. Implementations of this
- * interface will use the provided {@link ILoggingEvent} passed in via the {@link
- * #append(StringBuilder, ILoggingEvent)} method to extract particular key-value pairs to add to
- * the {@link StringBuilder} object.
+ * interface will use the provided {@link ILoggingEvent} passed in via the
+ * {@link #append(StringBuilder, EmittedKeys, ILoggingEvent)} method to extract particular
+ * key-value pairs to add to the {@link StringBuilder} object.
  */
 public abstract class KeyValueAppender {
 
@@ -36,11 +41,33 @@ public abstract class KeyValueAppender {
 
   /**
    * Uses the event to extract values to add to the provided {@link StringBuilder} object.
+   * Implementations record each key they write in the provided set of emitted keys.
    *
    * @param sb    The {@link StringBuilder} object to add the extracted key-value pairs to
+   * @param keys  The keys already written to the log line of the event
    * @param event The event containing the data to extract by implementations of this interface
+   * @param plan  The plan currently formatting the event
    */
-  public abstract void append(@NonNull StringBuilder sb, @NonNull ILoggingEvent event);
+  public abstract void append(@NonNull StringBuilder sb, @NonNull EmittedKeys keys,
+                              @NonNull ILoggingEvent event, @NonNull FormatterPlan plan);
+
+  /**
+   * Returns the name of the class that issued the given event. For events of at least the
+   * configured caller data level the class is taken from the caller data of the event, which
+   * requires logback to capture the stack of the logging call. For all other events the name of
+   * the logger is used instead, which matches the class name for loggers obtained via
+   * <code>LoggerFactory.getLogger(Foo.class)</code>.
+   *
+   * @param event The event to return the issuing class of
+   * @return The fully qualified name of the issuing class or <code>null</code> if it is unknown
+   */
+  @Nullable
+  protected String getClassName(@NonNull final ILoggingEvent event) {
+    if (event.getLevel().isGreaterOrEqual(state.getCallerDataLevel())) {
+      return StacktraceHelper.getLastClassName(event.getCallerData());
+    }
+    return event.getLoggerName();
+  }
 
   /**
    * Appends key-value pairs from any {@link LogFmtMarker} objects within the marker reference
@@ -48,55 +75,82 @@ public abstract class KeyValueAppender {
    *
    * @param sb The {@link StringBuilder} object to add key-value pairs found in {@link LogFmtMarker}
    *           objects
+   * @param keys The keys already written to the log line of the event
    * @param markers The list of {@link Marker} objects that may hold additional key-value properties
    *                to add to the log line.
-   * @param currAppenderName The name of the most recently processed appender. If the custom
-   *                         appender was already processed before, any key-value pairs found in
-   *                         {@link LogFmtMarker} objects not yet present in the log line will be
-   *                         added to the provided string builder. If the custom appender was not
-   *                         yet executed processing will be skipped as properties will be added by
-   *                         that appender then
+   * @param event The event currently formatted
+   * @param plan The plan currently formatting the event
+   * @param currAppenderKey The native key of the most recently processed appender. If the custom
+   *                        appender was already processed before, any key-value pairs found in
+   *                        {@link LogFmtMarker} objects not yet present in the log line will be
+   *                        added to the provided string builder. If the custom appender was not
+   *                        yet executed processing will be skipped as properties will be added by
+   *                        that appender then
    */
   protected void appendCustomCallbackKeysIfNotPresentYet(@NonNull final StringBuilder sb,
+                                                         @NonNull final EmittedKeys keys,
                                                          @Nullable final List<Marker> markers,
-                                                         @NonNull final String currAppenderName) {
-    final List<KeyValueAppender> currAppenders = state.getAppender();
-    final KeyValueAppender customAppender = state.getPredefinedAppender("custom");
-    final int customAppenderIdx = currAppenders.indexOf(customAppender);
-    final KeyValueAppender currAppender = state.getPredefinedAppender(currAppenderName);
-    final int currAppenderIdx = currAppenders.indexOf(currAppender);
+                                                         @NonNull final ILoggingEvent event,
+                                                         @NonNull final FormatterPlan plan,
+                                                         @NonNull final NativeKey currAppenderKey) {
     // custom appender will automatically add any custom specified key/value pairs.
     // However, if a custom value is added to the key/value list after the custom appender was
     // processed, these values will not be added to the log line automatically. To load such
     // key/values we check if the current appender is defined after the custom appender and if so
     // will add those key/values that are not yet part of the log line manually
-    if (customAppenderIdx < currAppenderIdx) {
-      appendCustomCallbackKeys(sb, markers);
+    if (plan.isCustomAppendedBefore(currAppenderKey)) {
+      appendCustomCallbackKeys(sb, keys, markers, event);
     }
   }
 
   private void appendCustomCallbackKeys(@NonNull final StringBuilder sb,
-                                        @Nullable final List<Marker> markers) {
+                                        @NonNull final EmittedKeys keys,
+                                        @Nullable final List<Marker> markers,
+                                        @NonNull final ILoggingEvent event) {
     if (markers != null) {
       for (final Marker marker : markers) {
         if (marker instanceof LogFmtMarker logFmtMarker
                 && logFmtMarker.hasCallbacks()) {
-          handleCallbackMarker(sb, logFmtMarker);
+          handleCallbackMarker(sb, keys, logFmtMarker, event);
         }
       }
     }
   }
 
   private void handleCallbackMarker(@NonNull final StringBuilder sb,
-                                    @NonNull final LogFmtMarker logFmtMarker) {
-    final List<Map.Entry<String, Object>> definedKeys = logFmtMarker.getDefinedKeyValues();
-    final String curLogLine = sb.toString();
+                                    @NonNull final EmittedKeys keys,
+                                    @NonNull final LogFmtMarker logFmtMarker,
+                                    @NonNull final ILoggingEvent event) {
+    final List<Map.Entry<String, Object>> definedKeys =
+            MarkerAccess.getDefinedKeyValues(logFmtMarker, event);
     for (final Map.Entry<String, Object> keyVal : definedKeys) {
-      if (!curLogLine.contains(keyVal.getKey() + "=")) {
-        StringUtils.appendKeyValueAndEscape(
-                sb, keyVal.getKey(), keyVal.getValue(), state.getMaskPasswords());
+      if (!keys.contains(keyVal.getKey())) {
+        StringUtils.appendKeyValueAndEscape(sb, keyVal.getKey(), keyVal.getValue(),
+                state.getKeyMasker(), state.getRedactor(), keys);
+      }
+    }
+  }
+
+  /**
+   * Checks whether any {@link LogFmtMarker} object within the provided list of <em>markers</em>
+   * holds a callback for the given field.
+   *
+   * @param markers The list of markers to check for available callbacks
+   * @param applyFor The field to check for a callback
+   * @return <code>true</code> if at least one marker holds a callback for the given field;
+   *         <code>false</code> otherwise
+   */
+  protected boolean hasCustomCallbacks(@Nullable final List<Marker> markers,
+                                       @NonNull final ApplyCallbackFor applyFor) {
+    if (markers != null) {
+      for (final Marker marker : markers) {
+        if (marker instanceof LogFmtMarker logFmtMarker
+                && logFmtMarker.hasCallbackFor(applyFor)) {
+          return true;
+        }
       }
     }
+    return false;
   }
 
   /**
@@ -111,18 +165,20 @@ public abstract class KeyValueAppender {
    * @param message The message to pass to the callback when markers are found that contain a
    *                callback
    * @param applyFor The actual callback to apply
+   * @param event The event currently formatted
    * @return The updated String by the callbacks or the original message string if no callback was
    *         found
    */
   @NonNull
   protected String handleCustomCallbacks(@NonNull final List<Marker> markers,
                                          @NonNull final String message,
-                                         @NonNull final ApplyCallbackFor applyFor) {
+                                         @NonNull final ApplyCallbackFor applyFor,
+                                         @NonNull final ILoggingEvent event) {
     String msg = message;
     for (final Marker marker : markers) {
       if (marker instanceof LogFmtMarker logFmtMarker
               && logFmtMarker.hasCallbacks()) {
-        msg = logFmtMarker.applyCallbackFor(msg, applyFor);
+        msg = MarkerAccess.applyCallbackFor(logFmtMarker, msg, applyFor, event);
       }
     }
 
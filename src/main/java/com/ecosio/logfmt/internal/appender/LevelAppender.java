@@ -1,6 +1,9 @@
 package com.ecosio.logfmt.internal.appender;
 
+import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.FormatterPlan;
 import com.ecosio.logfmt.internal.NativeKey;
 import com.ecosio.logfmt.internal.State;
 import com.ecosio.logfmt.utils.StringUtils;
@@ -8,9 +11,21 @@ import edu.umd.cs.findbugs.annotations.NonNull;
 
 /**
  * A log level appender that will take care of appending the log level name to the log line.
+ *
+ * <p>As only a handful of log levels exist, the <em>level</em> key-value pairs of the standard
+ * log levels are rendered once and copied to the log line as is.
  */
 public class LevelAppender extends KeyValueAppender {
 
+  /**
+   * The pre-rendered <em>level</em> key-value pairs of the standard log levels.
+   */
+  private static final String TRACE = render(Level.TRACE);
+  private static final String DEBUG = render(Level.DEBUG);
+  private static final String INFO = render(Level.INFO);
+  private static final String WARN = render(Level.WARN);
+  private static final String ERROR = render(Level.ERROR);
+
   /**
    * Instantiates a new object of this class and assigns the passed in state object to its internal
    * state.
@@ -22,8 +37,32 @@ public class LevelAppender extends KeyValueAppender {
   }
 
   @Override
-  public void append(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
+  public void append(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                     @NonNull final ILoggingEvent event, @NonNull final FormatterPlan plan) {
+    final Level level = event.getLevel();
+    keys.add(NativeKey.LEVEL.toString());
+    final String rendered = switch (level.toInt()) {
+      case Level.TRACE_INT -> TRACE;
+      case Level.DEBUG_INT -> DEBUG;
+      case Level.INFO_INT -> INFO;
+      case Level.WARN_INT -> WARN;
+      case Level.ERROR_INT -> ERROR;
+      default -> null;
+    };
+    if (rendered != null) {
+      sb.append(rendered);
+    } else {
+      sb.append(plan.keyToken(NativeKey.LEVEL));
+      StringUtils.appendMaskedValue(sb, NativeKey.LEVEL.toString(),
+              StringUtils.formatLogLevel(level), null, null);
+    }
+  }
+
+  @NonNull
+  private static String render(@NonNull final Level level) {
+    final StringBuilder sb = new StringBuilder();
     StringUtils.appendKeyValueAndEscape(sb, NativeKey.LEVEL.toString(),
-            StringUtils.formatLogLevel(event.getLevel()));
+            StringUtils.formatLogLevel(level));
+    return sb.toString();
   }
 }
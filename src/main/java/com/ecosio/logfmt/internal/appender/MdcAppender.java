@@ -1,18 +1,49 @@
 package com.ecosio.logfmt.internal.appender;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
-import com.ecosio.logfmt.internal.NativeKey;
+import com.ecosio.logfmt.internal.BufferRecycler;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.FormatterPlan;
+import com.ecosio.logfmt.internal.KeyValueFragment;
+import com.ecosio.logfmt.internal.MdcSelector;
 import com.ecosio.logfmt.internal.State;
+import com.ecosio.logfmt.utils.KeyMasker;
+import com.ecosio.logfmt.utils.Redactor;
 import com.ecosio.logfmt.utils.StringUtils;
 import edu.umd.cs.findbugs.annotations.NonNull;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 /**
  * A  message diagnostic context (MDC) appender that will take care of appending key-value pairs
- * found in the MDC context to the log line.
+ * found in the MDC context to the log line. The entries to append and their order are picked by
+ * the configured {@link MdcSelector}.
+ *
+ * <p>Logback hands out the same read-only copy of the MDC map for all events of a thread until the
+ * MDC is modified. The rendered key-value pairs of the most recent immutable MDC map are therefore
+ * cached per platform thread and copied verbatim into the log line as long as an event carries the
+ * very same map instance. The map is only referenced weakly, so the cache does not keep it alive.
  */
 public class MdcAppender extends KeyValueAppender {
 
+  /**
+   * The classes of maps that can not be modified once they were handed to an event, which allows
+   * to cache their rendered key-value pairs by identity.
+   */
+  private static final Set<Class<?>> IMMUTABLE_MAPS = Set.of(
+          Collections.unmodifiableMap(new HashMap<>()).getClass(),
+          Collections.emptyMap().getClass(),
+          Map.of().getClass(),
+          Map.of("", "").getClass());
+
+  /**
+   * The rendered key-value pairs of the most recent MDC map per thread.
+   */
+  private final ThreadLocal<CachedMdc> cache = new ThreadLocal<>();
+
   /**
    * Instantiates a new object of this class and assigns the passed in state object to its internal
    * state.
@@ -24,14 +55,53 @@ public class MdcAppender extends KeyValueAppender {
   }
 
   @Override
-  public void append(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
+  public void append(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                     @NonNull final ILoggingEvent event, @NonNull final FormatterPlan plan) {
     final Map<String, String> mdc = event.getMDCPropertyMap();
-    if (mdc != null) {
-      mdc.forEach((k, v) -> {
-        if (!NativeKey.isNativeKey(k)) {
-          StringUtils.appendKeyValueAndEscape(sb, k, v, state.getMaskPasswords());
-        }
-      });
+    if (mdc == null || mdc.isEmpty()) {
+      return;
+    }
+    if (!IMMUTABLE_MAPS.contains(mdc.getClass()) || BufferRecycler.isVirtualThread()) {
+      appendEntries(sb, keys, mdc);
+      return;
+    }
+
+    final MdcSelector selector = state.getMdcSelector();
+    final KeyMasker keyMasker = state.getKeyMasker();
+    final Redactor redactor = state.getRedactor();
+    CachedMdc cached = cache.get();
+    if (cached == null || cached.mdc.get() != mdc || cached.selector != selector
+            || cached.keyMasker != keyMasker || cached.redactor != redactor) {
+      final KeyValueFragment.Builder builder = new KeyValueFragment.Builder();
+      selector.forEach(mdc, (k, v) -> builder.add(k, v, keyMasker, redactor));
+      cached = new CachedMdc(
+              new WeakReference<>(mdc), selector, keyMasker, redactor, builder.build());
+      cache.set(cached);
     }
+    if (!cached.fragment.appendTo(sb, keys)) {
+      appendEntries(sb, keys, mdc);
+    }
+  }
+
+  private void appendEntries(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                             @NonNull final Map<String, String> mdc) {
+    state.getMdcSelector().forEach(mdc, (k, v) -> StringUtils.appendKeyValueAndEscape(
+            sb, k, v, state.getKeyMasker(), state.getRedactor(), keys));
+  }
+
+  /**
+   * The rendered key-value pairs of an MDC map.
+   *
+   * @param mdc       The MDC map the fragment was rendered for
+   * @param selector  The selector that picked the rendered MDC entries
+   * @param keyMasker The masker the fragment was rendered with
+   * @param redactor  The redactor the fragment was rendered with
+   * @param fragment  The rendered key-value pairs
+   */
+  private record CachedMdc(@NonNull WeakReference<Map<String, String>> mdc,
+                           @NonNull MdcSelector selector,
+                           @NonNull KeyMasker keyMasker,
+                           @NonNull Redactor redactor,
+                           @NonNull KeyValueFragment fragment) {
   }
 }
@@ -2,6 +2,8 @@ package com.ecosio.logfmt.internal.appender;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import com.ecosio.logfmt.ApplyCallbackFor;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.FormatterPlan;
 import com.ecosio.logfmt.internal.NativeKey;
 import com.ecosio.logfmt.internal.State;
 import com.ecosio.logfmt.utils.StringUtils;
@@ -25,16 +27,20 @@ public class MessageAppender extends KeyValueAppender {
   }
 
   @Override
-  public void append(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
+  public void append(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                     @NonNull final ILoggingEvent event, @NonNull final FormatterPlan plan) {
     String msg = event.getFormattedMessage();
     final List<Marker> markers = event.getMarkerList();
     if (markers != null) {
-      msg = StringUtils.obfuscateMsgIfNeeded(markers, msg);
-      msg = handleCustomCallbacks(markers, msg, ApplyCallbackFor.MESSAGE);
+      msg = StringUtils.obfuscateMsgIfNeeded(markers, msg, state.getCredentialScrubber());
+      msg = handleCustomCallbacks(markers, msg, ApplyCallbackFor.MESSAGE, event);
     }
-    StringUtils.appendKeyValueAndEscape(
-            sb, NativeKey.MESSAGE.toString(), msg, state.getMaskPasswords());
+    keys.add(NativeKey.MESSAGE.toString());
+    sb.append(plan.keyToken(NativeKey.MESSAGE));
+    StringUtils.appendMaskedValue(
+            sb, NativeKey.MESSAGE.toString(), msg, state.getKeyMasker(), state.getRedactor());
 
-    appendCustomCallbackKeysIfNotPresentYet(sb, markers, NativeKey.MESSAGE.toString());
+    appendCustomCallbackKeysIfNotPresentYet(
+            sb, keys, markers, event, plan, NativeKey.MESSAGE);
   }
 }
@@ -1,10 +1,11 @@
 package com.ecosio.logfmt.internal.appender;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.internal.ClassNameFragments;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.FormatterPlan;
 import com.ecosio.logfmt.internal.NativeKey;
 import com.ecosio.logfmt.internal.State;
-import com.ecosio.logfmt.utils.StacktraceHelper;
-import com.ecosio.logfmt.utils.StringUtils;
 import edu.umd.cs.findbugs.annotations.NonNull;
 
 /**
@@ -24,14 +25,12 @@ public class ModuleAppender extends KeyValueAppender {
   }
 
   @Override
-  public void append(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
-    final String className = StacktraceHelper.getLastClassName(event.getCallerData());
+  public void append(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                     @NonNull final ILoggingEvent event, @NonNull final FormatterPlan plan) {
+    final String className = getClassName(event);
     if (className != null) {
-      final int lastPointPosition = className.lastIndexOf('.');
-      final String module = lastPointPosition >= 0
-              ? className.substring(lastPointPosition + 1)
-              : className;
-      StringUtils.appendKeyValueAndEscape(sb, NativeKey.MODULE.toString(), module);
+      keys.add(NativeKey.MODULE.toString());
+      sb.append(ClassNameFragments.of(className).getModuleFragment());
     }
   }
 }
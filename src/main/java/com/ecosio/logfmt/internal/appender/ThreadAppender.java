@@ -1,6 +1,8 @@
 package com.ecosio.logfmt.internal.appender;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.internal.EmittedKeys;
+import com.ecosio.logfmt.internal.FormatterPlan;
 import com.ecosio.logfmt.internal.NativeKey;
 import com.ecosio.logfmt.internal.State;
 import com.ecosio.logfmt.utils.StringUtils;
@@ -23,7 +25,11 @@ public class ThreadAppender extends KeyValueAppender {
   }
 
   @Override
-  public void append(@NonNull final StringBuilder sb, @NonNull final ILoggingEvent event) {
-    StringUtils.appendKeyValueAndEscape(sb, NativeKey.THREAD.toString(), event.getThreadName());
+  public void append(@NonNull final StringBuilder sb, @NonNull final EmittedKeys keys,
+                     @NonNull final ILoggingEvent event, @NonNull final FormatterPlan plan) {
+    keys.add(NativeKey.THREAD.toString());
+    sb.append(plan.keyToken(NativeKey.THREAD));
+    StringUtils.appendMaskedValue(
+            sb, NativeKey.THREAD.toString(), event.getThreadName(), null, null);
   }
 }
@@ -6,6 +6,19 @@
  * properties that are supported by this LogFMT formatter out of the box.
  *
  * <p>{@link com.ecosio.logfmt.internal.State State} is a data class that acts as container for the
- * layout configuration state which is used by subcomponents.
+ * layout configuration state which is used by subcomponents. The configuration is compiled into
+ * an immutable {@link com.ecosio.logfmt.internal.FormatterPlan FormatterPlan} that is used to
+ * generate the log lines.
+ *
+ * <p>{@link com.ecosio.logfmt.internal.BufferRecycler BufferRecycler} hands out the buffers log
+ * lines are generated in and retains them per thread for subsequent events.
+ *
+ * <p>{@link com.ecosio.logfmt.internal.TimeRenderer TimeRenderer} renders the timestamp of log
+ * events according to the configured time format and caches the rendering per second.
+ *
+ * <p>{@link com.ecosio.logfmt.internal.MarkerAccess MarkerAccess} lets the layout render
+ * {@link com.ecosio.logfmt.LogFmtMarker LogFmtMarker} objects and apply their callbacks for the
+ * formatted event without exposing the rendering, which depends on types of this package, as
+ * public API of the marker.
  */
 package com.ecosio.logfmt.internal;
\ No newline at end of file
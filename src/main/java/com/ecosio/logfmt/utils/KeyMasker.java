@@ -0,0 +1,162 @@
+package com.ecosio.logfmt.utils;
+
+import edu.umd.cs.findbugs.annotations.NonNull;
+import edu.umd.cs.findbugs.annotations.Nullable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides whether the value of a key-value pair needs to be masked based on its key.
+ *
+ * <p>A masker is compiled once from the comma separated list of the
+ * <code>&lt;maskPasswords&gt;...&lt;/maskPasswords&gt;</code> configuration element. Entries are
+ * trimmed and may either be plain key names, which are looked up in a hash set, or patterns with a
+ * leading or trailing asterisk, i.e. <code>*token</code> or <code>secret*</code>, that match any
+ * key ending or starting with the given text. A single asterisk masks the values of all keys.
+ * Keys can optionally be matched case-insensitively.
+ *
+ * <p>As the set of keys used within the MDC and markers of an application is usually small, the
+ * outcome for keys that have to be matched against patterns or that need to be normalized for a
+ * case-insensitive lookup is remembered, so that subsequent checks of the same key only take a
+ * single hash lookup.
+ *
+ * <p>Instances of this class are immutable and thread-safe.
+ *
+ * @since 1.2.0
+ */
+public final class KeyMasker {
+
+  /**
+   * A masker that doesn't mask any key.
+   */
+  public static final KeyMasker NONE = new KeyMasker(Set.of(), new String[0], new String[0], false);
+
+  /**
+   * The maximum number of keys whose outcome is remembered.
+   */
+  private static final int MAX_CACHED_KEYS = 1024;
+
+  /**
+   * The key names to mask, in lower case if keys are matched case-insensitively.
+   */
+  private final Set<String> keys;
+  /**
+   * The prefixes of keys to mask, in lower case if keys are matched case-insensitively.
+   */
+  private final String[] prefixes;
+  /**
+   * The suffixes of keys to mask, in lower case if keys are matched case-insensitively.
+   */
+  private final String[] suffixes;
+  /**
+   * Whether keys are matched case-insensitively.
+   */
+  private final boolean ignoreCase;
+  /**
+   * The remembered outcome of previously checked keys. Only used if the outcome can't be
+   * determined by a single lookup in {@link #keys}.
+   */
+  private final Map<String, Boolean> outcomes = new ConcurrentHashMap<>();
+
+  private KeyMasker(@NonNull final Set<String> keys,
+                    @NonNull final String[] prefixes,
+                    @NonNull final String[] suffixes,
+                    final boolean ignoreCase) {
+    this.keys = keys;
+    this.prefixes = prefixes;
+    this.suffixes = suffixes;
+    this.ignoreCase = ignoreCase;
+  }
+
+  /**
+   * Compiles the given comma separated list of key names and patterns into a new masker.
+   *
+   * @param spec       The comma separated list of key names and patterns whose values should be
+   *                   masked. Blank entries are ignored
+   * @param ignoreCase <code>true</code> to match keys case-insensitively; <code>false</code> to
+   *                   match them case-sensitively
+   * @return The compiled masker
+   */
+  @NonNull
+  public static KeyMasker compile(@Nullable final String spec, final boolean ignoreCase) {
+    if (spec == null || spec.isBlank()) {
+      return NONE;
+    }
+
+    final Set<String> keys = new HashSet<>();
+    final List<String> prefixes = new ArrayList<>();
+    final List<String> suffixes = new ArrayList<>();
+    for (final String entry : spec.split(",")) {
+      String key = entry.trim();
+      if (ignoreCase) {
+        key = key.toLowerCase(Locale.ROOT);
+      }
+      if (key.isEmpty()) {
+        continue;
+      }
+      if (key.length() > 1 && key.startsWith("*")) {
+        suffixes.add(key.substring(1));
+      } else if (key.endsWith("*")) {
+        prefixes.add(key.substring(0, key.length() - 1));
+      } else {
+        keys.add(key);
+      }
+    }
+    return new KeyMasker(Set.copyOf(keys), prefixes.toArray(new String[0]),
+            suffixes.toArray(new String[0]), ignoreCase);
+  }
+
+  /**
+   * Checks whether the value of the given key needs to be masked.
+   *
+   * @param key The key of the key-value pair to check
+   * @return <code>true</code> if the value of the key needs to be masked; <code>false</code>
+   *         otherwise
+   */
+  public boolean isMasked(@NonNull final String key) {
+    if (!ignoreCase && prefixes.length == 0 && suffixes.length == 0) {
+      return keys.contains(key);
+    }
+
+    final Boolean outcome = outcomes.get(key);
+    if (outcome != null) {
+      return outcome;
+    }
+    final boolean masked = matches(ignoreCase ? key.toLowerCase(Locale.ROOT) : key);
+    if (outcomes.size() < MAX_CACHED_KEYS) {
+      outcomes.put(key, masked);
+    }
+    return masked;
+  }
+
+  /**
+   * Specifies whether this masker masks any key at all.
+   *
+   * @return <code>true</code> if no key is masked; <code>false</code> otherwise
+   */
+  public boolean isEmpty() {
+    return keys.isEmpty() && prefixes.length == 0 && suffixes.length == 0;
+  }
+
+  private boolean matches(@NonNull final String key) {
+    if (keys.contains(key)) {
+      return true;
+    }
+    for (final String prefix : prefixes) {
+      if (key.startsWith(prefix)) {
+        return true;
+      }
+    }
+    for (final String suffix : suffixes) {
+      if (key.endsWith(suffix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,237 @@
+package com.ecosio.logfmt.utils;
+
+import com.ecosio.logfmt.RedactionRule;
+import edu.umd.cs.findbugs.annotations.NonNull;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Replaces text matching any of a set of {@link RedactionRule redaction rules} within log values.
+ *
+ * <p>All rules are compiled into a single regular expression that combines the patterns of the
+ * rules as alternatives, each one wrapped in its own capturing group. A value is therefore scanned
+ * once, regardless of the number of configured rules, and the rule responsible for a match is
+ * identified by the group that participated in it. Values without any match are returned as they
+ * are, without allocating a new string.
+ *
+ * <p>As the regular expression engine tries each alternative at every position of a value, the
+ * combined pattern is only run if the value contains the anchor of at least one rule, i.e. a text
+ * every match of the rule contains. If a rule has no explicit anchor, the literal text its pattern
+ * starts with is used. Rules without any anchor cause every value to be scanned.
+ *
+ * <p>The number of replacements performed by each rule is counted, which helps to find rules that
+ * match more often than expected.
+ *
+ * <p>Instances of this class are immutable, apart from their hit counters, and thread-safe.
+ *
+ * @since 1.2.0
+ */
+public final class Redactor {
+
+  /**
+   * A redactor without any rules that returns all values as they are.
+   */
+  public static final Redactor NONE =
+          new Redactor(new String[0], new String[0], null, new int[0], new String[0]);
+
+  /**
+   * The characters with a special meaning within a regular expression.
+   */
+  private static final String META_CHARS = "\\^$.|?*+()[]{}";
+
+  /**
+   * The names of the rules.
+   */
+  private final String[] names;
+  /**
+   * The replacements of the rules.
+   */
+  private final String[] replacements;
+  /**
+   * The combined pattern of all rules or <code>null</code> if there are no rules.
+   */
+  private final Pattern pattern;
+  /**
+   * The index of the capturing group of each rule within the combined pattern.
+   */
+  private final int[] groups;
+  /**
+   * The number of replacements performed by each rule.
+   */
+  private final LongAdder[] hits;
+  /**
+   * The anchors a value needs to contain at least one of to be scanned or <code>null</code> if
+   * any rule has no anchor and all values need to be scanned.
+   */
+  private final String[] anchors;
+
+  private Redactor(@NonNull final String[] names,
+                   @NonNull final String[] replacements,
+                   final Pattern pattern,
+                   @NonNull final int[] groups,
+                   final String[] anchors) {
+    this.names = names;
+    this.replacements = replacements;
+    this.pattern = pattern;
+    this.groups = groups;
+    this.anchors = anchors;
+    this.hits = new LongAdder[names.length];
+    for (int i = 0; i < hits.length; i++) {
+      hits[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Compiles the given rules into a new redactor.
+   *
+   * @param rules The rules to apply in the given order of precedence, which only matters if the
+   *              matches of several rules start at the same position
+   * @return The compiled redactor
+   * @throws IllegalArgumentException If a rule has no name or no valid pattern
+   */
+  @NonNull
+  public static Redactor compile(@NonNull final List<RedactionRule> rules) {
+    if (rules.isEmpty()) {
+      return NONE;
+    }
+
+    final String[] names = new String[rules.size()];
+    final String[] replacements = new String[rules.size()];
+    final int[] groups = new int[rules.size()];
+    String[] anchors = new String[rules.size()];
+    final StringBuilder combined = new StringBuilder();
+    int group = 1;
+    for (int i = 0; i < rules.size(); i++) {
+      final RedactionRule rule = rules.get(i);
+      if (rule.getName() == null || rule.getName().isBlank()) {
+        throw new IllegalArgumentException("Redaction rule without name: " + rule);
+      }
+      if (rule.getPattern() == null || rule.getPattern().isEmpty()) {
+        throw new IllegalArgumentException("Redaction rule without pattern: " + rule);
+      }
+
+      final int ruleGroups;
+      try {
+        ruleGroups = Pattern.compile(rule.getPattern()).matcher("").groupCount();
+      } catch (PatternSyntaxException ex) {
+        throw new IllegalArgumentException(
+                "Invalid pattern of redaction rule " + rule.getName() + ": " + ex.getMessage(), ex);
+      }
+      names[i] = rule.getName();
+      replacements[i] = rule.getReplacement();
+      groups[i] = group;
+      final String anchor = rule.getAnchor() != null && !rule.getAnchor().isEmpty()
+              ? rule.getAnchor() : literalPrefix(rule.getPattern());
+      if (anchor.isEmpty()) {
+        anchors = null;
+      } else if (anchors != null) {
+        anchors[i] = anchor;
+      }
+      group += ruleGroups + 1;
+      combined.append(i > 0 ? "|(" : "(").append(rule.getPattern()).append(')');
+    }
+    return new Redactor(
+            names, replacements, Pattern.compile(combined.toString()), groups, anchors);
+  }
+
+  /**
+   * Returns the literal text every match of the given pattern starts with. Patterns containing
+   * alternatives or starting with inline flags, which may make the match case-insensitive, have
+   * no literal prefix.
+   *
+   * @param pattern The regular expression to inspect
+   * @return The literal text the pattern starts with, which is empty if there is none
+   */
+  @NonNull
+  private static String literalPrefix(@NonNull final String pattern) {
+    if (pattern.indexOf('|') >= 0) {
+      return "";
+    }
+    int end = 0;
+    while (end < pattern.length() && META_CHARS.indexOf(pattern.charAt(end)) < 0) {
+      end++;
+    }
+    // the last literal character is optional or repeated if a quantifier follows it
+    if (end > 0 && end < pattern.length() && "?*+{".indexOf(pattern.charAt(end)) >= 0) {
+      end--;
+    }
+    return pattern.substring(0, end);
+  }
+
+  /**
+   * Replaces all text matching any rule of this redactor within the given value.
+   *
+   * @param value The value to redact
+   * @return The redacted value or the very same value object if no rule matched
+   */
+  @NonNull
+  public String redact(@NonNull final String value) {
+    if (pattern == null || anchors != null && !containsAnchor(value)) {
+      return value;
+    }
+
+    final Matcher matcher = pattern.matcher(value);
+    StringBuilder sb = null;
+    int copied = 0;
+    while (matcher.find()) {
+      if (matcher.end() == matcher.start()) {
+        continue;
+      }
+      final int rule = ruleOf(matcher);
+      if (sb == null) {
+        sb = new StringBuilder(value.length());
+      }
+      sb.append(value, copied, matcher.start()).append(replacements[rule]);
+      copied = matcher.end();
+      hits[rule].increment();
+    }
+    return sb == null ? value : sb.append(value, copied, value.length()).toString();
+  }
+
+  private boolean containsAnchor(@NonNull final String value) {
+    for (final String anchor : anchors) {
+      if (value.contains(anchor)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private int ruleOf(@NonNull final Matcher matcher) {
+    for (int i = 0; i < groups.length - 1; i++) {
+      if (matcher.start(groups[i]) >= 0) {
+        return i;
+      }
+    }
+    return groups.length - 1;
+  }
+
+  /**
+   * Specifies whether this redactor has any rules at all.
+   *
+   * @return <code>true</code> if no rule is configured; <code>false</code> otherwise
+   */
+  public boolean isEmpty() {
+    return pattern == null;
+  }
+
+  /**
+   * Returns the number of replacements each rule performed so far.
+   *
+   * @return A map holding the name of each rule and its number of replacements in the order the
+   *         rules were configured in
+   */
+  @NonNull
+  public Map<String, Long> getHits() {
+    final Map<String, Long> result = new LinkedHashMap<>();
+    for (int i = 0; i < names.length; i++) {
+      result.merge(names[i], hits[i].sum(), Long::sum);
+    }
+    return result;
+  }
+}
@@ -6,5 +6,4 @@ module ecosio.logfmt {
   requires com.github.spotbugs.annotations;
 
   exports com.ecosio.logfmt;
-  exports com.ecosio.logfmt.utils to ecosio.logfmt.test;
 }
\ No newline at end of file
@@ -7,6 +7,7 @@ import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.ThrowableProxy;
+import java.time.Instant;
 import java.util.Calendar;
 import java.util.List;
 import java.util.Map;
@@ -14,11 +15,13 @@ import org.slf4j.Marker;
 
 public class EventBuilder {
   private final String msg;
-  private final long time;
+  private long time;
+  private Instant instant;
   private Level loggingLevel = Level.INFO;
   private Map<String, String> mdc;
   private List<Marker> markers;
   private Throwable error;
+  private String loggerName;
 
   public EventBuilder(String msg) {
     Calendar calendar = Calendar.getInstance();
@@ -27,6 +30,17 @@ public class EventBuilder {
     this.msg = msg;
   }
 
+  public EventBuilder timestamp(long time) {
+    this.time = time;
+    return this;
+  }
+
+  public EventBuilder instant(Instant instant) {
+    this.time = instant.toEpochMilli();
+    this.instant = instant;
+    return this;
+  }
+
   public EventBuilder loggingLevel(Level level) {
     this.loggingLevel = level;
     return this;
@@ -42,6 +56,11 @@ public class EventBuilder {
     return this;
   }
 
+  public EventBuilder loggerName(String loggerName) {
+    this.loggerName = loggerName;
+    return this;
+  }
+
   public EventBuilder error(Throwable t) {
     this.error = t;
     return this;
@@ -51,7 +70,9 @@ public class EventBuilder {
     ILoggingEvent event = mock(ILoggingEvent.class);
     when(event.getLevel()).thenReturn(loggingLevel);
     when(event.getTimeStamp()).thenReturn(time);
+    when(event.getInstant()).thenReturn(instant != null ? instant : Instant.ofEpochMilli(time));
     when(event.getThreadName()).thenReturn("thread0");
+    when(event.getLoggerName()).thenReturn(loggerName);
     when(event.getFormattedMessage()).thenReturn(msg);
     when(event.getMDCPropertyMap()).thenReturn(mdc);
     when(event.getMarkerList()).thenReturn(markers);
@@ -0,0 +1,77 @@
+package com.ecosio.logfmt.test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import com.ecosio.logfmt.LogFmtEncoder;
+import com.ecosio.logfmt.LogFmtLayout;
+import com.ecosio.logfmt.LogFmtMarker;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Marker;
+
+@DisplayName("LogFmtEncoder")
+public class LogFmtEncoderTest {
+
+  @Test
+  @DisplayName("encodes the same log line as the layout")
+  public void encodesLayoutOutput() {
+    // Arrange
+    Marker marker = LogFmtMarker.with("nodeName", "testNode");
+    ILoggingEvent event = new EventBuilder("test message").markers(marker).build();
+    LogFmtLayout layout = new LogFmtLayout();
+    layout.setAppName("test-app");
+    LogFmtEncoder encoder = new LogFmtEncoder();
+    encoder.setLayout(layout);
+    encoder.start();
+
+    // Act
+    byte[] result = encoder.encode(event);
+
+    // Assert
+    String expected =
+            "app=test-app time=\"2017-11-30T15:10:25\" level=info thread=thread0 "
+                    + "package=com.ecosio.logfmt module=LogFmtLayout msg=\"test message\" "
+                    + "nodeName=testNode\n";
+    assertThat(new String(result, StandardCharsets.UTF_8), is(equalTo(expected)));
+  }
+
+  @Test
+  @DisplayName("encodes non-ASCII characters as UTF-8")
+  public void encodesNonAsciiCharacters() {
+    // Arrange
+    ILoggingEvent event = new EventBuilder("Grüße aus Wien € 😀").build();
+    LogFmtEncoder encoder = new LogFmtEncoder();
+    encoder.start();
+
+    // Act
+    byte[] result = encoder.encode(event);
+
+    // Assert
+    String expected = new LogFmtLayout().doLayout(event);
+    assertThat(result, is(equalTo(expected.getBytes(StandardCharsets.UTF_8))));
+  }
+
+  @Test
+  @DisplayName("encodes subsequent events correctly after an event exceeding the retained size")
+  public void encodesAfterOversizedEvent() {
+    // Arrange
+    ILoggingEvent large = new EventBuilder("x".repeat(100_000)).build();
+    ILoggingEvent small = new EventBuilder("test message").build();
+    LogFmtEncoder encoder = new LogFmtEncoder();
+    encoder.start();
+
+    // Act
+    encoder.encode(large);
+    byte[] result = encoder.encode(small);
+
+    // Assert
+    String expected =
+            "time=\"2017-11-30T15:10:25\" level=info thread=thread0 "
+                    + "package=com.ecosio.logfmt module=LogFmtLayout msg=\"test message\"\n";
+    assertThat(new String(result, StandardCharsets.UTF_8), is(equalTo(expected)));
+  }
+}
@@ -0,0 +1,54 @@
+package com.ecosio.logfmt.test.internal;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import com.ecosio.logfmt.internal.BufferRecycler;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("BufferRecycler")
+public class BufferRecyclerTest {
+
+  @Test
+  @DisplayName("hands out released buffers again")
+  public void reusesReleasedBuffers() {
+    BufferRecycler recycler = new BufferRecycler();
+    StringBuilder sb = recycler.acquireStringBuilder();
+    sb.append("test message");
+    recycler.releaseStringBuilder(sb);
+
+    StringBuilder reusedSb = recycler.acquireStringBuilder();
+
+    assertThat(reusedSb, is(sameInstance(sb)));
+    assertThat(reusedSb.length(), is(0));
+  }
+
+  @Test
+  @DisplayName("does not hand out a buffer twice before it was released")
+  public void acquiredBuffersAreExclusive() {
+    BufferRecycler recycler = new BufferRecycler();
+    recycler.releaseStringBuilder(recycler.acquireStringBuilder());
+
+    StringBuilder outer = recycler.acquireStringBuilder();
+    StringBuilder nested = recycler.acquireStringBuilder();
+
+    assertThat(nested, is(not(sameInstance(outer))));
+  }
+
+  @Test
+  @DisplayName("does not retain buffers exceeding the retention limit")
+  public void dropsOversizedBuffers() {
+    BufferRecycler recycler = new BufferRecycler();
+    recycler.setMaxRetainedSize(1024);
+    StringBuilder sb = recycler.acquireStringBuilder();
+    sb.append("x".repeat(2048));
+    recycler.releaseStringBuilder(sb);
+
+    StringBuilder next = recycler.acquireStringBuilder();
+
+    assertThat(next, is(not(sameInstance(sb))));
+  }
+}
@@ -0,0 +1,52 @@
+package com.ecosio.logfmt.test.utils;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import com.ecosio.logfmt.utils.KeyMasker;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("KeyMasker")
+public class KeyMaskerTest {
+
+  @Test
+  @DisplayName("masks trimmed keys case-sensitively by default")
+  public void caseSensitive() {
+    KeyMasker masker = KeyMasker.compile("pw, userKey,,", false);
+
+    assertThat(masker.isMasked("pw"), is(true));
+    assertThat(masker.isMasked("userKey"), is(true));
+    assertThat(masker.isMasked("userkey"), is(false));
+    assertThat(masker.isMasked(""), is(false));
+  }
+
+  @Test
+  @DisplayName("masks keys matching prefix and suffix patterns")
+  public void patterns() {
+    KeyMasker masker = KeyMasker.compile("*Token,secret*", false);
+
+    assertThat(masker.isMasked("accessToken"), is(true));
+    assertThat(masker.isMasked("secretKey"), is(true));
+    assertThat(masker.isMasked("accesstoken"), is(false));
+    assertThat(masker.isMasked("topSecret"), is(false));
+  }
+
+  @Test
+  @DisplayName("masks keys case-insensitively if requested")
+  public void caseInsensitive() {
+    KeyMasker masker = KeyMasker.compile("Password,*TOKEN", true);
+
+    assertThat(masker.isMasked("password"), is(true));
+    assertThat(masker.isMasked("PASSWORD"), is(true));
+    assertThat(masker.isMasked("refresh_token"), is(true));
+    assertThat(masker.isMasked("passwordHint"), is(false));
+  }
+
+  @Test
+  @DisplayName("masks nothing if no keys are specified")
+  public void empty() {
+    assertThat(KeyMasker.compile(" , ", false).isEmpty(), is(true));
+    assertThat(KeyMasker.NONE.isMasked("pw"), is(false));
+  }
+}
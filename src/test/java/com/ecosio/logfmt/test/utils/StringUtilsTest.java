@@ -5,6 +5,12 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
 
 import com.ecosio.logfmt.utils.StringUtils;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -43,4 +49,77 @@ public class StringUtilsTest {
               is(equalTo("The \\\\ backslash \\\\ return")));
     }
   }
+
+  @Nested
+  @DisplayName("appends values")
+  public class AppendValueTest {
+
+    @Test
+    @DisplayName("without quotes if not needed")
+    public void plainValue() {
+      StringBuilder sb = new StringBuilder("key=");
+      StringUtils.appendValue(sb, "edi-inbound_1.0/test@host^+");
+      assertThat(sb.toString(), is(equalTo("key=edi-inbound_1.0/test@host^+")));
+    }
+
+    @Test
+    @DisplayName("between quotes if a character requires quoting")
+    public void quotedValue() {
+      StringBuilder sb = new StringBuilder("key=");
+      StringUtils.appendValue(sb, "Grüße aus Wien");
+      assertThat(sb.toString(), is(equalTo("key=\"Grüße aus Wien\"")));
+    }
+
+    @Test
+    @DisplayName("escaped and between quotes if a character needs escaping")
+    public void escapedValue() {
+      StringBuilder sb = new StringBuilder("key=");
+      StringUtils.appendValue(sb, "The\t\"message\"\r\n\\");
+      assertThat(sb.toString(), is(equalTo("key=\"The\\t\\\"message\\\"\\r\\n\\\\\"")));
+    }
+
+    @Test
+    @DisplayName("of several hundred characters")
+    public void longValues() {
+      String plain = "edi-inbound_1.0".repeat(40);
+      String quoted = plain + " \"message\"\n" + plain + "\u00fc\t" + plain + "\\";
+      StringBuilder sb = new StringBuilder();
+
+      StringUtils.appendValue(sb, plain);
+      sb.append(' ');
+      StringUtils.appendValue(sb, quoted);
+
+      String expected = plain + " \"" + plain + " \\\"message\\\"\\n" + plain + "\u00fc\\t"
+              + plain + "\\\\\"";
+      assertThat(sb.toString(), is(equalTo(expected)));
+      assertThat(StringUtils.needsQuoting(plain), is(false));
+      assertThat(StringUtils.needsQuoting(quoted), is(true));
+      assertThat(StringUtils.escapeValue(quoted).toString(),
+              is(equalTo(expected.substring(plain.length() + 2, expected.length() - 1))));
+    }
+  }
+
+  @Nested
+  @DisplayName("writes typed values")
+  public class TypedValueTest {
+
+    @Test
+    @DisplayName("like their string representation")
+    public void likeToString() {
+      List<Object> values = List.of(42, -7L, (short) 3, (byte) -1, 0.1, -1.5e-12, Double.NaN,
+              0.1f, true, new BigDecimal("1.50E+3"), UUID.fromString("00f1e2d3-0004-4c5b-8a69-7e8f90a1b2c3"),
+              Instant.ofEpochSecond(1_700_000_000L, 120_000_000), Instant.EPOCH,
+              Duration.ZERO, Duration.ofHours(2), Duration.ofMinutes(-61),
+              Duration.ofMillis(-500), Duration.ofSeconds(-1, 250_000_000),
+              Duration.ofSeconds(3723, 4_500), TimeUnit.SECONDS, Thread.State.TIMED_WAITING);
+
+      for (Object value : values) {
+        StringBuilder typed = new StringBuilder();
+        StringUtils.appendKeyValueAndEscape(typed, "key", value);
+        StringBuilder plain = new StringBuilder("key=");
+        StringUtils.appendValue(plain, value.toString());
+        assertThat(typed.toString(), is(equalTo(plain + " ")));
+      }
+    }
+  }
 }
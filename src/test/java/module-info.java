@@ -9,5 +9,6 @@ module ecosio.logfmt.test {
   requires transitive org.junit.jupiter.api;
 
   exports com.ecosio.logfmt.test;
+  exports com.ecosio.logfmt.test.internal;
   exports com.ecosio.logfmt.test.utils;
 }
\ No newline at end of file